@@ -2,20 +2,55 @@ package com.example.apidumper;
 
 import org.apache.commons.cli.*;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import com.google.gson.*;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.io.EOFException;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * ApiDumper - A command line tool for analyzing REST API responses
@@ -48,10 +83,11 @@ public class ApiDumper {
             String generateJsonFile = cmd.getOptionValue("generateJson");
             String jsonFile = cmd.getOptionValue("jsonFile");
             String url = cmd.getOptionValue("url");
+            String urlFile = cmd.getOptionValue("urlFile");
             
-            // Check for mutual exclusivity between jsonFile and url
-            if (jsonFile != null && url != null) {
-                System.err.println("Error: --jsonFile and --url are mutually exclusive. Use only one of them.");
+            // Check for mutual exclusivity between the input sources
+            if ((jsonFile != null ? 1 : 0) + (url != null ? 1 : 0) + (urlFile != null ? 1 : 0) > 1) {
+                System.err.println("Error: --jsonFile, --url and --urlFile are mutually exclusive. Use only one of them.");
                 printHelp(options);
                 System.exit(1);
             }
@@ -60,14 +96,55 @@ public class ApiDumper {
                 // Generate JSON from schema file - standalone mode
                 String ruleName = cmd.getOptionValue("rule");
                 generateJsonFromSchema(generateJsonFile, ruleName);
+            } else if (cmd.hasOption("mergePartials")) {
+                // Coordinator mode - merge the partial states written by --shard workers
+                try (AnalysisOptions analysisOptions = getAnalysisOptions(cmd)) {
+                    mergePartialStates(cmd.getOptionValue("mergePartials"), analysisOptions, cmd.getOptionValue("reportFile"));
+                }
+            } else if (cmd.hasOption("mergeReports")) {
+                // Merge mode - combine existing schema reports without the raw data
+                int threads = getIntOption(cmd, "threads", Runtime.getRuntime().availableProcessors());
+                mergeSchemaReports(cmd.getOptionValue("mergeReports"), cmd.getOptionValue("reportFile"), threads);
             } else if (jsonFile != null && !jsonFile.trim().isEmpty()) {
                 // JSON file mode - read from file
                 boolean dumpSchemaReport = cmd.hasOption("dumpSchemaReport");
                 boolean noDataDump = cmd.hasOption("noDataDump");
-                String dumpDistinctValues = cmd.getOptionValue("dumpDistinctValues", "");
-                String reportFile = cmd.getOptionValue("reportFile");
-                
-                processJsonFile(jsonFile, dumpSchemaReport, noDataDump, dumpDistinctValues, reportFile);
+                try (AnalysisOptions analysisOptions = getAnalysisOptions(cmd)) {
+                    String reportFile = cmd.getOptionValue("reportFile");
+                    
+                    if (isJsonFileSet(jsonFile)) {
+                        int threads = getIntOption(cmd, "threads", Runtime.getRuntime().availableProcessors());
+                        processJsonFileSet(jsonFile, cmd.hasOption("jsonLines"), dumpSchemaReport, analysisOptions, reportFile, threads,
+                                           cmd.getOptionValue("checkpoint"));
+                    } else if (cmd.hasOption("jsonLines") && cmd.hasOption("shard")) {
+                        int threads = getIntOption(cmd, "threads", Runtime.getRuntime().availableProcessors());
+                        runJsonLinesWorker(jsonFile, cmd.getOptionValue("shard"), cmd.getOptionValue("partialOutput"), 
+                                           analysisOptions, threads);
+                    } else if (cmd.hasOption("jsonLines") && cmd.hasOption("workers")) {
+                        int threads = getIntOption(cmd, "threads", Runtime.getRuntime().availableProcessors());
+                        coordinateJsonLinesWorkers(jsonFile, getIntOption(cmd, "workers", 1), args, analysisOptions, 
+                                                   reportFile, threads);
+                    } else if (cmd.hasOption("jsonLines")) {
+                        int threads = getIntOption(cmd, "threads", Runtime.getRuntime().availableProcessors());
+                        processJsonLinesFile(jsonFile, dumpSchemaReport, noDataDump, analysisOptions, reportFile, threads);
+                    } else {
+                        // Batching parses array elements into trees, so it is only used when asked for
+                        analysisOptions.threads = getIntOption(cmd, "threads", 1);
+                        applySampleOption(cmd, analysisOptions);
+                        warnIfThreadsUnused(analysisOptions);
+                        processJsonFile(jsonFile, dumpSchemaReport, noDataDump, analysisOptions, reportFile);
+                    }
+                }
+            } else if (urlFile != null && !urlFile.trim().isEmpty()) {
+                // Batch mode - profile every URL listed in the file
+                try (AnalysisOptions analysisOptions = getAnalysisOptions(cmd)) {
+                    String reportDir = cmd.getOptionValue("reportDir");
+                    String combinedReport = cmd.getOptionValue("combinedReport");
+                    int threads = getIntOption(cmd, "threads", 8);
+                    int maxConnectionsPerHost = getIntOption(cmd, "maxConnectionsPerHost", 4);
+                    
+                    processUrlBatch(urlFile, analysisOptions, reportDir, combinedReport, threads, maxConnectionsPerHost);
+                }
             } else {
                 // Normal API call mode - URL is required
                 if (url == null || url.trim().isEmpty()) {
@@ -78,10 +155,31 @@ public class ApiDumper {
                 
                 boolean dumpSchemaReport = cmd.hasOption("dumpSchemaReport");
                 boolean noDataDump = cmd.hasOption("noDataDump");
-                String dumpDistinctValues = cmd.getOptionValue("dumpDistinctValues", "");
-                String reportFile = cmd.getOptionValue("reportFile");
-                
-                callApiAndOutputResponse(url, dumpSchemaReport, noDataDump, dumpDistinctValues, reportFile);
+                try (AnalysisOptions analysisOptions = getAnalysisOptions(cmd)) {
+                    String reportFile = cmd.getOptionValue("reportFile");
+                    
+                    if (cmd.hasOption("nextLinkPath") || cmd.hasOption("cursorParam") || cmd.hasOption("pageParam")) {
+                        CrawlSettings crawl = new CrawlSettings();
+                        crawl.nextLinkPath = cmd.getOptionValue("nextLinkPath");
+                        crawl.cursorPath = cmd.getOptionValue("cursorPath");
+                        crawl.cursorParam = cmd.getOptionValue("cursorParam");
+                        crawl.pageParam = cmd.getOptionValue("pageParam");
+                        crawl.startPage = getIntOption(cmd, "startPage", 1);
+                        crawl.maxPages = getIntOption(cmd, "maxPages", Integer.MAX_VALUE);
+                        if (crawl.cursorParam != null && crawl.cursorPath == null) {
+                            System.err.println("Error: --cursorParam requires --cursorPath");
+                            System.exit(1);
+                        }
+                        
+                        crawlPaginatedApi(url, crawl, analysisOptions, reportFile);
+                    } else {
+                        String cacheDir = cmd.getOptionValue("cacheDir");
+                        analysisOptions.threads = getIntOption(cmd, "threads", 1);
+                        applySampleOption(cmd, analysisOptions);
+                        warnIfThreadsUnused(analysisOptions);
+                        callApiAndOutputResponse(url, dumpSchemaReport, noDataDump, analysisOptions, reportFile, cacheDir);
+                    }
+                }
             }
             
         } catch (ParseException e) {
@@ -91,6 +189,96 @@ public class ApiDumper {
         }
     }
     
+    private static int getIntOption(CommandLine cmd, String name, int defaultValue) {
+        String value = cmd.getOptionValue(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed < 1) {
+                throw new NumberFormatException("must be at least 1");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            System.err.println("Error: --" + name + " expects a positive integer but got '" + value + "'");
+            System.exit(1);
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * Reads the options that control what the analyzer tracks for each property.
+     */
+    private static AnalysisOptions getAnalysisOptions(CommandLine cmd) {
+        AnalysisOptions analysisOptions = parseAnalysisOptions(cmd.getOptionValue("dumpDistinctValues", ""));
+        if (cmd.hasOption("approximateDistinct")) {
+            int precision = getIntOption(cmd, "approximateDistinct", HyperLogLog.DEFAULT_PRECISION);
+            if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+                System.err.println("Error: --approximateDistinct precision must be between " + HyperLogLog.MIN_PRECISION 
+                                   + " and " + HyperLogLog.MAX_PRECISION + " but got " + precision);
+                System.exit(1);
+            }
+            analysisOptions.distinctPrecision = precision;
+        }
+        analysisOptions.topValues = getIntOption(cmd, "topValues", 0);
+        analysisOptions.quantiles = cmd.hasOption("quantiles");
+        analysisOptions.stats = cmd.hasOption("stats");
+        if (cmd.hasOption("offHeapDistinct")) {
+            analysisOptions.offHeap = new OffHeapMemory(getIntOption(cmd, "offHeapDistinct", 256) * (1L << 20));
+        }
+        if (cmd.hasOption("includePaths") || cmd.hasOption("excludePaths")) {
+            analysisOptions.pathFilter = new PathFilter(cmd.getOptionValue("includePaths"), cmd.getOptionValue("excludePaths"));
+        }
+        return analysisOptions;
+    }
+    
+    /**
+     * Reads --sample, which is either an element count or a fraction between 0 and 1.
+     */
+    private static void applySampleOption(CommandLine cmd, AnalysisOptions analysisOptions) {
+        String sample = cmd.getOptionValue("sample");
+        if (sample == null || sample.trim().isEmpty()) {
+            return;
+        }
+        try {
+            if (sample.contains(".")) {
+                double fraction = Double.parseDouble(sample.trim());
+                if (!(fraction > 0 && fraction <= 1)) {
+                    throw new NumberFormatException("fraction out of range");
+                }
+                analysisOptions.sampleFraction = fraction;
+            } else {
+                int count = Integer.parseInt(sample.trim());
+                if (count < 1) {
+                    throw new NumberFormatException("must be at least 1");
+                }
+                analysisOptions.sampleSize = count;
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Error: --sample expects an element count or a fraction between 0 and 1 but got '" + sample + "'");
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Warns when --threads was given for a single JSON document together with an option
+     * that keeps its top-level arrays out of parallel batches, so the run is sequential.
+     */
+    private static void warnIfThreadsUnused(AnalysisOptions analysisOptions) {
+        if (analysisOptions.threads <= 1) {
+            return;
+        }
+        String option = analysisOptions.isSampling() ? "--sample"
+                : analysisOptions.pathFilter != null ? "--includePaths/--excludePaths"
+                : analysisOptions.topValues > 0 ? "--topValues"
+                : analysisOptions.quantiles ? "--quantiles" : null;
+        if (option != null) {
+            System.err.println("Warning: --threads is not used with " + option 
+                               + " for a single JSON document; it is analyzed on one thread");
+        }
+    }
+    
     private static Options createOptions() {
         Options options = new Options();
         
@@ -148,7 +336,7 @@ public class ApiDumper {
                 .longOpt("jsonFile")
                 .hasArg()
                 .argName("FILE")
-                .desc("Read JSON from a file instead of making an API call")
+                .desc("Read JSON from a file instead of making an API call. A directory or glob pattern analyzes every matching file")
                 .build();
         
         options.addOption(urlOption);
@@ -161,6 +349,203 @@ public class ApiDumper {
         options.addOption(ruleOption);
         options.addOption(jsonFileOption);
         
+        options.addOption(Option.builder()
+                .longOpt("jsonLines")
+                .desc("Treat --jsonFile as JSON Lines (one JSON record per line) and analyze it in parallel")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("shard")
+                .hasArg()
+                .argName("I/N")
+                .desc("Worker mode for --jsonLines: analyze only the I-th of N line-aligned byte ranges of the file "
+                      + "(0-based) and write the partial state to --partialOutput")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("partialOutput")
+                .hasArg()
+                .argName("FILE")
+                .desc("File the partial state of a --shard worker is written to")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("workers")
+                .hasArg()
+                .argName("COUNT")
+                .desc("Coordinator mode for --jsonLines: run the analysis in COUNT local worker processes "
+                      + "and merge their partial states into the schema report")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("mergePartials")
+                .hasArg()
+                .argName("FILES")
+                .desc("Coordinator mode: merge the partial states of --shard workers (a comma-separated list of files, "
+                      + "directories or glob patterns) into the schema report; use the workers' analysis options")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("threads")
+                .hasArg()
+                .argName("COUNT")
+                .desc("Number of worker threads for parallel analysis (default: number of processors, 8 for --urlFile, "
+                      + "1 for a single JSON document)")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("approximateDistinct")
+                .hasArg()
+                .optionalArg(true)
+                .argName("PRECISION")
+                .desc("Estimate distinct value counts with a HyperLogLog sketch of 2^PRECISION registers (4-18, default: 14) "
+                      + "instead of keeping every value; properties in --dumpDistinctValues stay exact")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("mergeReports")
+                .hasArg()
+                .argName("REPORTS")
+                .desc("Merge existing schema reports into one: a comma-separated list of report files, "
+                      + "directories or glob patterns")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("checkpoint")
+                .hasArg()
+                .argName("FILE")
+                .desc("Directory / glob mode: keep the analysis state in this file and only analyze files "
+                      + "that were added since it was written")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("topValues")
+                .hasArg()
+                .argName("K")
+                .desc("Report the K most frequent primitive values of every property with their counts, "
+                      + "tracked in fixed memory per property (Space-Saving)")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("includePaths")
+                .hasArg()
+                .argName("GLOBS")
+                .desc("Only analyze these property paths and what is below them, comma-separated; * matches within "
+                      + "one path segment and ** any number of segments, e.g. users.*.id,**.createdAt")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("excludePaths")
+                .hasArg()
+                .argName("GLOBS")
+                .desc("Skip these property paths and what is below them without parsing them, comma-separated globs")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("offHeapDistinct")
+                .hasArg()
+                .optionalArg(true)
+                .argName("BUDGET_MB")
+                .desc("Keep large exact distinct value sets outside the Java heap, in direct memory up to BUDGET_MB "
+                      + "(default: 256) and in a memory-mapped temporary file beyond that")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("quantiles")
+                .desc("Add p50/p90/p99 and a coarse histogram of numbers and of integer, float and datetime strings "
+                      + "to the schema report, estimated in fixed memory per property")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("sample")
+                .hasArg()
+                .argName("COUNT|FRACTION")
+                .desc("Analyze only a random sample of the elements of top-level arrays: a fixed number of elements "
+                      + "(reservoir sampling) or a fraction such as 0.01; counts are scaled and reported with 95% bounds")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("stats")
+                .desc("Print run statistics, such as the hit rate of the type inference cache, with the schema report")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("cacheDir")
+                .hasArg()
+                .argName("DIR")
+                .desc("Cache responses in this directory and revalidate them with ETag/Last-Modified on later runs")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("nextLinkPath")
+                .hasArg()
+                .argName("PROPERTY")
+                .desc("Crawl mode: follow the next-page URL found at this property path of each page")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("cursorPath")
+                .hasArg()
+                .argName("PROPERTY")
+                .desc("Crawl mode: property path of the next-page cursor (use with --cursorParam)")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("cursorParam")
+                .hasArg()
+                .argName("NAME")
+                .desc("Crawl mode: query parameter that receives the cursor for the next page")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("pageParam")
+                .hasArg()
+                .argName("NAME")
+                .desc("Crawl mode: query parameter holding the page number, incremented until a page has no array elements")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("startPage")
+                .hasArg()
+                .argName("NUMBER")
+                .desc("Crawl mode: first page number for --pageParam (default: 1)")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("maxPages")
+                .hasArg()
+                .argName("COUNT")
+                .desc("Crawl mode: stop after this many pages")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("urlFile")
+                .hasArg()
+                .argName("FILE")
+                .desc("Batch mode: fetch and analyze every URL listed in the file (one per line)")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("maxConnectionsPerHost")
+                .hasArg()
+                .argName("COUNT")
+                .desc("Maximum pooled connections per host in batch mode (default: 4)")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("reportDir")
+                .hasArg()
+                .argName("DIR")
+                .desc("Batch mode: write one schema report per URL into this directory instead of the console")
+                .build());
+        
+        options.addOption(Option.builder()
+                .longOpt("combinedReport")
+                .hasArg()
+                .argName("FILE")
+                .desc("Batch mode: also write a schema report merged across all URLs to this file")
+                .build());
+        
         return options;
     }
     
@@ -172,41 +557,97 @@ public class ApiDumper {
                 "Example: java -jar apidumper.jar --url https://api.example.com/data");
     }
     
-    private static void callApiAndOutputResponse(String url, boolean dumpSchemaReport, boolean noDataDump, String dumpDistinctValues, String reportFile) {
+    private static void callApiAndOutputResponse(String url, boolean dumpSchemaReport, boolean noDataDump, AnalysisOptions options, 
+                                                 String reportFile, String cacheDir) {
         HttpClient client = HttpClients.createDefault();
-        HttpGet request = new HttpGet(url);
         
         try {
+            HttpGet request = new HttpGet(url);
+            // Ask for a compressed transfer; HttpClient inflates it while we stream
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+            
+            ResponseCache cache = cacheDir != null && !cacheDir.trim().isEmpty() ? new ResponseCache(new File(cacheDir), url) : null;
+            if (cache != null) {
+                cache.addValidators(request);
+            }
+            
             System.out.println("Calling API: " + url);
             System.out.println(repeat("-", 50));
             
             HttpResponse response = client.execute(request);
             
             // Output status information
-            System.out.println("Status Code: " + response.getStatusLine().getStatusCode());
+            int statusCode = response.getStatusLine().getStatusCode();
+            System.out.println("Status Code: " + statusCode);
             System.out.println("Reason Phrase: " + response.getStatusLine().getReasonPhrase());
             System.out.println();
             
-            // Get response body
             HttpEntity entity = response.getEntity();
-            String responseBody = "";
-            if (entity != null) {
-                responseBody = EntityUtils.toString(entity);
+            if (cache != null && statusCode == 304 && cache.hasBody()) {
                 EntityUtils.consume(entity);
+                System.out.println("Not modified; using cached response");
+                System.out.println();
+                outputCachedResponse(cache, dumpSchemaReport, noDataDump, options, reportFile);
+                return;
             }
             
-            // Output response body (unless suppressed)
+            // Stream the response body. When it is printed, the bytes are copied to the
+            // console as they are read, and the schema analyzer consumes the same stream,
+            // so the body is never held in memory and analysis overlaps the transfer.
             if (!noDataDump) {
                 System.out.println("Response Body:");
                 System.out.println(repeat("-", 50));
-                System.out.println(responseBody);
             }
             
-            // Generate schema report if requested
+            Map<String, PropertyInfo> propertyMap = null;
+            if (entity != null) {
+                InputStream content = decompressIfNeeded(entity.getContent());
+                java.io.OutputStream cacheBody = cache != null && ResponseCache.isCacheable(response) ? cache.openBody() : null;
+                if (cacheBody != null) {
+                    content = new TeeInputStream(content, cacheBody);
+                }
+                TeeInputStream body = new TeeInputStream(content, noDataDump ? null : System.out);
+                java.nio.charset.Charset charset = getEntityCharset(entity);
+                try {
+                    if (dumpSchemaReport) {
+                        Reader reader = new InputStreamReader(body, charset);
+                        propertyMap = analyzeJsonStream(reader, options);
+                    }
+                    // Read whatever the analyzer did not need so the full body is printed and cached
+                    if (!noDataDump || cacheBody != null) {
+                        body.drain();
+                    }
+                } finally {
+                    EntityUtils.consume(entity);
+                    if (cacheBody != null) {
+                        cacheBody.close();
+                    }
+                }
+                if (!noDataDump) {
+                    body.finishLine();
+                }
+                if (cacheBody != null) {
+                    cache.commit(response, charset);
+                    if (propertyMap != null) {
+                        cache.saveReport(options, propertyMap);
+                    }
+                }
+            } else {
+                if (!noDataDump) {
+                    System.out.println();
+                }
+                if (dumpSchemaReport) {
+                    propertyMap = analyzeJsonStream(new java.io.StringReader(""), options);
+                }
+            }
+            
+            // Output schema report if requested
             if (dumpSchemaReport) {
                 System.out.println();
                 System.out.println();
-                generateSchemaReport(responseBody, dumpDistinctValues, reportFile);
+                if (propertyMap != null) {
+                    outputSchemaReport(propertyMap, options, reportFile);
+                }
             }
             
         } catch (IOException e) {
@@ -218,542 +659,5111 @@ public class ApiDumper {
         }
     }
     
-    private static void processJsonFile(String jsonFilePath, boolean dumpSchemaReport, boolean noDataDump, 
-                                       String dumpDistinctValues, String reportFile) {
-        try {
-            System.out.println("Reading JSON from file: " + jsonFilePath);
+    /**
+     * Crawl mode. Pages are fetched on a background thread one page ahead of the
+     * analysis: with --pageParam the next page is requested as soon as the current
+     * one starts being analyzed, and with --nextLinkPath or --cursorPath as soon as
+     * the link or cursor has been read from the page. Every page is folded into one
+     * running property map and dropped, so memory is bounded by two pages.
+     */
+    private static void crawlPaginatedApi(String startUrl, CrawlSettings crawl, AnalysisOptions options, String reportFile) {
+        Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+        ExecutorService fetcher = Executors.newSingleThreadExecutor();
+        
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            System.out.println("Crawling API: " + startUrl);
             System.out.println(repeat("-", 50));
             
-            // Read JSON content from file
-            String jsonContent = readJsonFromFile(jsonFilePath);
-            if (jsonContent == null) {
-                System.err.println("Error: Could not read JSON content from file: " + jsonFilePath);
-                return;
-            }
+            String firstUrl = crawl.pageParam != null 
+                    ? setQueryParameter(startUrl, crawl.pageParam, String.valueOf(crawl.startPage)) 
+                    : startUrl;
+            Future<FetchedPage> next = fetcher.submit(() -> fetchPage(client, firstUrl));
+            int pages = 0;
             
-            // Output JSON content (unless suppressed)
-            if (!noDataDump) {
-                System.out.println("JSON Content:");
-                System.out.println(repeat("-", 50));
-                System.out.println(jsonContent);
+            while (next != null && pages < crawl.maxPages) {
+                FetchedPage page;
+                try {
+                    page = next.get();
+                } catch (ExecutionException e) {
+                    System.err.println("IO Error: " + e.getCause().getMessage());
+                    break;
+                }
+                next = null;
+                pages++;
+                System.out.println("Page " + pages + ": " + page.url + " -> " + page.statusCode + " " + page.reasonPhrase);
+                if (page.statusCode < 200 || page.statusCode >= 300) {
+                    System.err.println("Error: Stopping crawl at non-success status " + page.statusCode);
+                    break;
+                }
+                
+                final AtomicReference<Future<FetchedPage>> prefetch = new AtomicReference<>();
+                if (crawl.pageParam != null && pages < crawl.maxPages) {
+                    String nextUrl = setQueryParameter(startUrl, crawl.pageParam, String.valueOf(crawl.startPage + pages));
+                    prefetch.set(fetcher.submit(() -> fetchPage(client, nextUrl)));
+                }
+                
+                StreamingAnalyzer analyzer = new StreamingAnalyzer(null, propertyMap, options);
+                String linkPath = crawl.nextLinkPath != null ? crawl.nextLinkPath : crawl.cursorPath;
+                if (linkPath != null && pages < crawl.maxPages) {
+                    final String currentUrl = page.url;
+                    analyzer.watch(linkPath, value -> {
+                        if (prefetch.get() != null || value.isEmpty()) {
+                            return;
+                        }
+                        String nextUrl = crawl.nextLinkPath != null 
+                                ? java.net.URI.create(currentUrl).resolve(value).toString() 
+                                : setQueryParameter(startUrl, crawl.cursorParam, value);
+                        if (!nextUrl.equals(currentUrl)) {
+                            prefetch.set(fetcher.submit(() -> fetchPage(client, nextUrl)));
+                        }
+                    });
+                }
+                
+                Reader reader = new InputStreamReader(new java.io.ByteArrayInputStream(page.body), page.charset);
+                if (!analyzeJsonStream(reader, analyzer)) {
+                    System.err.println("Error: Stopping crawl at unparseable page " + page.url);
+                    break;
+                }
+                
+                next = prefetch.get();
+                if (crawl.pageParam != null && analyzer.getArrayElementCount() == 0 && next != null) {
+                    // An empty page marks the end of the data set
+                    next.cancel(true);
+                    next = null;
+                }
             }
             
-            // Generate schema report if requested
-            if (dumpSchemaReport) {
-                System.out.println();
+            System.out.println();
+            System.out.println("Crawled " + pages + " page(s)");
+            if (!propertyMap.isEmpty()) {
                 System.out.println();
-                generateSchemaReport(jsonContent, dumpDistinctValues, reportFile);
+                outputSchemaReport(propertyMap, options, reportFile);
             }
             
-        } catch (Exception e) {
-            System.err.println("Error processing JSON file: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("IO Error: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid URL: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Crawl interrupted");
+        } finally {
+            fetcher.shutdownNow();
         }
     }
     
-    private static String readJsonFromFile(String filePath) {
+    private static String setQueryParameter(String url, String name, String value) {
         try {
-            File file = new File(filePath);
-            if (!file.exists()) {
-                System.err.println("Error: File does not exist: " + filePath);
-                return null;
+            return new URIBuilder(url).setParameter(name, value).build().toString();
+        } catch (java.net.URISyntaxException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+    
+    private static FetchedPage fetchPage(HttpClient client, String url) throws IOException {
+        HttpGet request = new HttpGet(url);
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        HttpResponse response = client.execute(request);
+        FetchedPage page = new FetchedPage();
+        page.url = url;
+        page.statusCode = response.getStatusLine().getStatusCode();
+        page.reasonPhrase = response.getStatusLine().getReasonPhrase();
+        HttpEntity entity = response.getEntity();
+        page.body = new byte[0];
+        if (entity != null) {
+            try (InputStream in = decompressIfNeeded(entity.getContent())) {
+                java.io.ByteArrayOutputStream body = new java.io.ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+                page.body = body.toByteArray();
+            }
+        }
+        page.charset = entity != null ? getEntityCharset(entity) : StandardCharsets.UTF_8;
+        return page;
+    }
+    
+    private static class CrawlSettings {
+        String nextLinkPath;
+        String cursorPath;
+        String cursorParam;
+        String pageParam;
+        int startPage = 1;
+        int maxPages = Integer.MAX_VALUE;
+    }
+    
+    private static class FetchedPage {
+        String url;
+        int statusCode;
+        String reasonPhrase;
+        byte[] body;
+        java.nio.charset.Charset charset;
+    }
+    
+    /**
+     * Batch mode. Every URL in the file is fetched on a worker pool over one shared
+     * pooled, keep-alive HTTP client and analyzed as its body streams in. Each URL gets
+     * its own schema report; the combined report merges the URLs in file order.
+     */
+    private static void processUrlBatch(String urlFile, AnalysisOptions options, String reportDir, 
+                                        String combinedReportFile, int threads, int maxConnectionsPerHost) {
+        List<String> urls;
+        try {
+            urls = readUrlList(urlFile);
+        } catch (IOException e) {
+            System.err.println("Error reading URL file: " + e.getMessage());
+            return;
+        }
+        if (urls.isEmpty()) {
+            System.err.println("Error: No URLs found in file: " + urlFile);
+            return;
+        }
+        if (reportDir != null && !reportDir.trim().isEmpty()) {
+            File dir = new File(reportDir);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                System.err.println("Error: Cannot create report directory: " + reportDir);
+                return;
             }
+        }
+        boolean combine = combinedReportFile != null && !combinedReportFile.trim().isEmpty();
+        Map<String, PropertyInfo> combinedMap = new LinkedHashMap<>();
+        
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(Math.max(threads, maxConnectionsPerHost));
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, urls.size()));
+        
+        try (CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .build()) {
             
-            if (!file.canRead()) {
-                System.err.println("Error: Cannot read file: " + filePath);
-                return null;
+            System.out.println("Calling " + urls.size() + " APIs from: " + urlFile);
+            System.out.println(repeat("-", 50));
+            
+            List<Future<UrlAnalysis>> futures = new ArrayList<>();
+            for (final String url : urls) {
+                futures.add(pool.submit(() -> fetchAndAnalyze(client, url, options)));
             }
             
-            StringBuilder content = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
+            // Report in file order; later URLs keep downloading in the meantime
+            int analyzed = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                UrlAnalysis result;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    result = new UrlAnalysis(urls.get(i));
+                    result.error = e.getCause().getMessage();
+                }
+                
+                String prefix = "[" + (i + 1) + "/" + urls.size() + "] " + result.url;
+                if (result.error != null) {
+                    System.out.println(prefix + " -> Error: " + result.error);
+                    continue;
+                }
+                if (result.statusCode < 200 || result.statusCode >= 300) {
+                    System.out.println(prefix + " -> " + result.statusCode + " " + result.reasonPhrase + " (not analyzed)");
+                    continue;
+                }
+                System.out.println(prefix + " -> " + result.statusCode + " " + result.reasonPhrase);
+                if (result.propertyMap == null) {
+                    continue;
+                }
+                analyzed++;
+                
+                String reportFile = null;
+                if (reportDir != null && !reportDir.trim().isEmpty()) {
+                    reportFile = new File(reportDir, getBatchReportFileName(i, result.url)).getPath();
+                }
+                outputSchemaReport(result.propertyMap, options, reportFile);
+                
+                if (combine) {
+                    mergePropertyMaps(combinedMap, result.propertyMap);
                 }
             }
             
-            return content.toString().trim();
+            if (combine) {
+                System.out.println();
+                System.out.println("Combined report for " + analyzed + " of " + urls.size() + " APIs:");
+                outputSchemaReport(combinedMap, options, combinedReportFile);
+            }
             
         } catch (IOException e) {
-            System.err.println("IO Error reading file: " + e.getMessage());
-            return null;
+            System.err.println("IO Error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Batch interrupted");
+        } finally {
+            pool.shutdownNow();
         }
     }
     
-    private static void generateSchemaReport(String jsonResponse, String dumpDistinctValues, String reportFile) {
-        String schemaReportJson = generateSchemaReportJson(jsonResponse, dumpDistinctValues);
-        outputSchemaReport(schemaReportJson, reportFile);
-    }
-    
-    private static String generateSchemaReportJson(String jsonResponse, String dumpDistinctValues) {
+    /**
+     * Merge mode. Schema reports, typically from the same analysis run on many hosts, are
+     * read back into property infos on a worker pool and merged in input order, so a
+     * fleet-wide report needs no raw data. Counts, type counts and inferred type counts
+     * add up; min/max are compared by type as during analysis; distinct value arrays are
+     * unioned and top values are merged as Space-Saving counters. Distinct counts without
+     * an array cannot be combined exactly, so they become the largest input count, a lower
+     * bound, and are marked as estimated. Quantiles and histograms are not carried over.
+     */
+    private static void mergeSchemaReports(String reports, String reportFile, int threads) {
+        List<File> files = new ArrayList<>();
         try {
-            // Check if response is empty or null
-            if (jsonResponse == null || jsonResponse.trim().isEmpty()) {
-                System.err.println("Error: Response body is empty. Cannot generate schema report.");
-                return null;
+            for (String item : reports.split(",")) {
+                item = item.trim();
+                if (item.isEmpty()) {
+                    continue;
+                }
+                if (isJsonFileSet(item)) {
+                    files.addAll(listJsonFiles(item));
+                } else {
+                    files.add(new File(item));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing schema reports: " + e.getMessage());
+            return;
+        }
+        if (files.isEmpty()) {
+            System.err.println("Error: No schema reports match: " + reports);
+            return;
+        }
+        
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        try {
+            List<Future<Map<String, PropertyInfo>>> futures = new ArrayList<>();
+            for (final File file : files) {
+                futures.add(pool.submit(() -> readSchemaReportProperties(file)));
             }
             
-            JsonElement element = JsonParser.parseString(jsonResponse);
+            List<Map<String, PropertyInfo>> read = new ArrayList<>();
+            AnalysisOptions options = new AnalysisOptions();
+            // A union of lists is only complete if every report with the property listed its values
+            Set<String> unlisted = new HashSet<>();
+            int topValues = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    Map<String, PropertyInfo> properties = futures.get(i).get();
+                    for (Map.Entry<String, PropertyInfo> entry : properties.entrySet()) {
+                        if (entry.getValue().hasValueList) {
+                            options.distinctValueProps.add(entry.getKey());
+                        } else {
+                            unlisted.add(entry.getKey());
+                        }
+                        if (entry.getValue().topValues != null) {
+                            topValues = Math.max(topValues, entry.getValue().topValues.size());
+                        }
+                    }
+                    read.add(properties);
+                } catch (ExecutionException e) {
+                    System.err.println("Skipping schema report " + files.get(i).getPath() + ": " + e.getCause().getMessage());
+                }
+            }
+            if (read.isEmpty()) {
+                System.err.println("Error: None of the schema reports could be read");
+                return;
+            }
+            options.distinctValueProps.removeAll(unlisted);
             
-            Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
-            analyzeJsonElement(element, "", propertyMap);
+            Map<String, PropertyInfo> merged = new LinkedHashMap<>();
+            for (Map<String, PropertyInfo> properties : read) {
+                for (PropertyInfo info : properties.values()) {
+                    // A report lists fewer than K top values when a property has fewer distinct values,
+                    // so every summary gets the largest list size seen as its capacity
+                    if (info.topValues != null && info.topValues.capacity < topValues) {
+                        SpaceSaving resized = new SpaceSaving(topValues);
+                        resized.merge(info.topValues);
+                        info.topValues = resized;
+                    }
+                }
+                mergePropertyMaps(merged, properties);
+            }
+            System.out.println("Merged " + read.size() + " schema report(s)");
+            outputSchemaReport(merged, options, reportFile);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Merge interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Reads a count of a schema report. Counts may exceed the int range, and reports written
+     * by other tools may scale sampled counts to fractions, which are rounded.
+     */
+    private static long readReportCount(JsonElement count) {
+        return count.getAsBigDecimal().setScale(0, java.math.RoundingMode.HALF_UP).longValueExact();
+    }
+    
+    /**
+     * Reads a schema report back into the property infos it was built from, as far as the
+     * report records them.
+     */
+    private static Map<String, PropertyInfo> readSchemaReportProperties(File file) throws IOException {
+        JsonElement root;
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            root = JsonParser.parseReader(reader);
+        }
+        if (!root.isJsonObject() || !root.getAsJsonObject().has("schemaReport")) {
+            throw new IOException("not a schema report");
+        }
+        
+        Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+        for (JsonElement element : root.getAsJsonObject().getAsJsonArray("schemaReport")) {
+            JsonObject property = element.getAsJsonObject();
+            PropertyInfo info = new PropertyInfo();
+            info.count = readReportCount(property.get("count"));
             
-            // Parse the properties to dump distinct values for
-            Set<String> distinctValueProps = new HashSet<>();
-            if (dumpDistinctValues != null && !dumpDistinctValues.trim().isEmpty()) {
-                String[] props = dumpDistinctValues.split(",");
-                for (String prop : props) {
-                    distinctValueProps.add(prop.trim());
+            if (property.has("distinctValuesArray")) {
+                for (JsonElement value : property.getAsJsonArray("distinctValuesArray")) {
+                    info.distinctValues.add(value.getAsString());
                 }
+                info.hasValueList = true;
+            } else if (property.has("distinctValues")) {
+                info.distinctFloor = readReportCount(property.get("distinctValues"));
             }
             
-            // Build the JSON report
-            Map<String, Object> reportMap = new LinkedHashMap<>();
-            List<Map<String, Object>> properties = new ArrayList<>();
+            if (property.has("topValues")) {
+                JsonArray topValues = property.getAsJsonArray("topValues");
+                info.topValues = new SpaceSaving(Math.max(1, topValues.size()));
+                for (JsonElement topValue : topValues) {
+                    JsonObject counter = topValue.getAsJsonObject();
+                    info.topValues.add(counter.get("value").getAsString(), readReportCount(counter.get("count")),
+                                       counter.has("error") ? readReportCount(counter.get("error")) : 0);
+                }
+            }
             
-            for (Map.Entry<String, PropertyInfo> entry : propertyMap.entrySet()) {
-                PropertyInfo info = entry.getValue();
-                String propertyName = entry.getKey();
+            for (JsonElement typeElement : property.getAsJsonArray("dataTypes")) {
+                JsonObject dataTypeInfo = typeElement.getAsJsonObject();
+                String dataType = dataTypeInfo.get("type").getAsString();
+                JsonElement example = dataTypeInfo.get("example");
+                info.typeExamples.put(dataType, getExampleValue(dataType, 
+                    example != null && example.isJsonPrimitive() ? example.getAsJsonPrimitive() : null));
+                info.typeCounts.put(dataType, readReportCount(dataTypeInfo.get("count")));
                 
-                Map<String, Object> propertyReport = new LinkedHashMap<>();
-                propertyReport.put("property", propertyName);
-                propertyReport.put("count", info.count);
-                propertyReport.put("distinctValues", info.distinctValues.size());
-                
-                // Add distinct values array if requested
-                if (distinctValueProps.contains(propertyName)) {
-                    List<String> sortedValues = new ArrayList<>(info.distinctValues);
-                    Collections.sort(sortedValues);
-                    propertyReport.put("distinctValuesArray", sortedValues);
+                if (dataTypeInfo.has("inferredTypes")) {
+                    Set<String> inferredTypes = new LinkedHashSet<>();
+                    Map<String, Long> inferredCounts = new LinkedHashMap<>();
+                    for (JsonElement inferred : dataTypeInfo.getAsJsonArray("inferredTypes")) {
+                        String inferredType = inferred.getAsJsonObject().get("type").getAsString();
+                        inferredTypes.add(inferredType);
+                        inferredCounts.put(inferredType, readReportCount(inferred.getAsJsonObject().get("count")));
+                    }
+                    info.inferredTypesSet.put(dataType, inferredTypes);
+                    info.inferredTypeCounts.put(dataType, inferredCounts);
                 }
                 
-                // Build data types array
-                List<Map<String, Object>> dataTypesList = new ArrayList<>();
-                for (Map.Entry<String, Object> typeEntry : info.typeExamples.entrySet()) {
-                    String dataType = typeEntry.getKey();
-                    Map<String, Object> dataTypeInfo = new LinkedHashMap<>();
-                    dataTypeInfo.put("type", dataType);
-                    dataTypeInfo.put("count", info.typeCounts.getOrDefault(dataType, 0));
-                    dataTypeInfo.put("example", typeEntry.getValue());
-                    
-                    // Add inferred types for strings with their counts
-                    if (dataType.equals("string") && info.inferredTypesSet.containsKey(dataType)) {
-                        Set<String> inferredTypes = info.inferredTypesSet.get(dataType);
-                        Map<String, Integer> inferredCounts = info.inferredTypeCounts.get(dataType);
-                        
-                        // Build inferred types array with counts
-                        List<Map<String, Object>> inferredTypesList = new ArrayList<>();
-                        for (String inferredType : inferredTypes) {
-                            Map<String, Object> inferredTypeInfo = new LinkedHashMap<>();
-                            inferredTypeInfo.put("type", inferredType);
-                            inferredTypeInfo.put("count", inferredCounts.getOrDefault(inferredType, 0));
-                            inferredTypesList.add(inferredTypeInfo);
-                        }
-                        dataTypeInfo.put("inferredTypes", inferredTypesList);
+                if (dataTypeInfo.has("minValues")) {
+                    Map<String, ValueRange> typeRanges = new LinkedHashMap<>();
+                    JsonObject maxValues = dataTypeInfo.getAsJsonObject("maxValues");
+                    for (Map.Entry<String, JsonElement> min : dataTypeInfo.getAsJsonObject("minValues").entrySet()) {
+                        ValueRange range = createValueRange(min.getKey());
+                        range.add(min.getValue().getAsString());
+                        range.add(maxValues.get(min.getKey()).getAsString());
+                        typeRanges.put(min.getKey(), range);
                     }
-                    
-                    // Add min/max values
-                    if (info.minValues.containsKey(dataType) && !info.minValues.get(dataType).isEmpty()) {
-                        dataTypeInfo.put("minValues", info.minValues.get(dataType));
-                    }
-                    if (info.maxValues.containsKey(dataType) && !info.maxValues.get(dataType).isEmpty()) {
-                        dataTypeInfo.put("maxValues", info.maxValues.get(dataType));
+                    info.ranges.put(dataType, typeRanges);
+                }
+            }
+            propertyMap.put(property.get("property").getAsString(), info);
+        }
+        return propertyMap;
+    }
+    
+    private static List<String> readUrlList(String urlFile) throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (String line : readFile(urlFile).split("\n")) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                urls.add(line);
+            }
+        }
+        return urls;
+    }
+    
+    private static String getBatchReportFileName(int index, String url) {
+        String name = url.replaceFirst("^[a-zA-Z]+://", "").replaceAll("[^A-Za-z0-9._-]+", "_");
+        if (name.length() > 80) {
+            name = name.substring(0, 80);
+        }
+        return String.format("%04d-%s.json", index + 1, name);
+    }
+    
+    /**
+     * Fetches one URL with the given client and streams its body into the analyzer.
+     */
+    private static UrlAnalysis fetchAndAnalyze(HttpClient client, String url, AnalysisOptions options) throws IOException {
+        UrlAnalysis result = new UrlAnalysis(url);
+        HttpGet request;
+        try {
+            request = new HttpGet(url);
+        } catch (IllegalArgumentException e) {
+            result.error = "Invalid URL: " + e.getMessage();
+            return result;
+        }
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        
+        HttpResponse response = client.execute(request);
+        result.statusCode = response.getStatusLine().getStatusCode();
+        result.reasonPhrase = response.getStatusLine().getReasonPhrase();
+        
+        HttpEntity entity = response.getEntity();
+        if (result.statusCode < 200 || result.statusCode >= 300) {
+            // Error payloads such as {"error": ...} are not part of the API's schema
+            EntityUtils.consume(entity);
+            return result;
+        }
+        try {
+            Reader reader = entity != null 
+                    ? new InputStreamReader(decompressIfNeeded(entity.getContent()), getEntityCharset(entity)) 
+                    : new java.io.StringReader("");
+            result.propertyMap = analyzeJsonStream(reader, options);
+        } finally {
+            EntityUtils.consume(entity);
+        }
+        return result;
+    }
+    
+    private static class UrlAnalysis {
+        final String url;
+        int statusCode;
+        String reasonPhrase;
+        Map<String, PropertyInfo> propertyMap;
+        String error;
+        
+        UrlAnalysis(String url) {
+            this.url = url;
+        }
+    }
+    
+    /**
+     * Replays a cached response after a 304. The cached report is reused when one
+     * was saved for the same distinct value properties; otherwise the cached body
+     * is analyzed from disk.
+     */
+    private static void outputCachedResponse(ResponseCache cache, boolean dumpSchemaReport, boolean noDataDump, 
+                                             AnalysisOptions options, String reportFile) throws IOException {
+        if (!noDataDump) {
+            System.out.println("Response Body:");
+            System.out.println(repeat("-", 50));
+            copyFileToConsole(cache.getBodyFile());
+        }
+        
+        if (dumpSchemaReport) {
+            // A report saved with the cached body is replayed as is
+            boolean cachedReport = cache.hasReport(options);
+            Map<String, PropertyInfo> propertyMap = null;
+            if (!cachedReport) {
+                try (Reader reader = new InputStreamReader(new FileInputStream(cache.getBodyFile()), cache.getCharset())) {
+                    propertyMap = analyzeJsonStream(reader, options);
+                }
+                if (propertyMap != null) {
+                    cache.saveReport(options, propertyMap);
+                }
+            }
+            System.out.println();
+            System.out.println();
+            if (propertyMap != null) {
+                outputSchemaReport(propertyMap, options, reportFile);
+            } else if (cachedReport) {
+                outputSchemaReport(writer -> cache.copyReport(options, writer), reportFile);
+            }
+        }
+    }
+    
+    /**
+     * On-disk cache of one URL's response: the decoded body, its ETag and
+     * Last-Modified validators, and the schema reports computed from it. Entries are
+     * named by a SHA-256 hash of the URL.
+     */
+    private static class ResponseCache {
+        private final File dir;
+        private final String url;
+        private final String key;
+        private CacheEntry entry;
+        
+        ResponseCache(File dir, String url) throws IOException {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create cache directory: " + dir);
+            }
+            this.dir = dir;
+            this.url = url;
+            this.key = sha256Hex(url);
+            this.entry = loadEntry();
+        }
+        
+        static boolean isCacheable(HttpResponse response) {
+            return response.getStatusLine().getStatusCode() == 200
+                    && (response.containsHeader(HttpHeaders.ETAG) || response.containsHeader(HttpHeaders.LAST_MODIFIED));
+        }
+        
+        boolean hasBody() {
+            return entry != null && getBodyFile().isFile();
+        }
+        
+        File getBodyFile() {
+            return new File(dir, key + ".body");
+        }
+        
+        java.nio.charset.Charset getCharset() {
+            try {
+                return java.nio.charset.Charset.forName(entry.charset);
+            } catch (RuntimeException e) {
+                return StandardCharsets.UTF_8;
+            }
+        }
+        
+        void addValidators(HttpGet request) {
+            if (!hasBody()) {
+                return;
+            }
+            if (entry.etag != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, entry.etag);
+            }
+            if (entry.lastModified != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified);
+            }
+        }
+        
+        /**
+         * Opens a temporary file for a new body; commit moves it into place.
+         */
+        java.io.OutputStream openBody() throws IOException {
+            return new java.io.BufferedOutputStream(new java.io.FileOutputStream(new File(dir, key + ".body.tmp")), 65536);
+        }
+        
+        void commit(HttpResponse response, java.nio.charset.Charset charset) throws IOException {
+            // Reports computed from the previous body are stale now
+            File[] reports = dir.listFiles((d, name) -> name.startsWith(key + ".report-"));
+            if (reports != null) {
+                for (File report : reports) {
+                    report.delete();
+                }
+            }
+            java.nio.file.Files.move(new File(dir, key + ".body.tmp").toPath(), getBodyFile().toPath(),
+                                     java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            
+            CacheEntry updated = new CacheEntry();
+            updated.url = url;
+            updated.etag = response.containsHeader(HttpHeaders.ETAG) 
+                    ? response.getFirstHeader(HttpHeaders.ETAG).getValue() : null;
+            updated.lastModified = response.containsHeader(HttpHeaders.LAST_MODIFIED) 
+                    ? response.getFirstHeader(HttpHeaders.LAST_MODIFIED).getValue() : null;
+            updated.charset = charset.name();
+            try (Writer writer = new java.io.OutputStreamWriter(
+                    new java.io.FileOutputStream(new File(dir, key + ".meta.json")), StandardCharsets.UTF_8)) {
+                new Gson().toJson(updated, writer);
+            }
+            entry = updated;
+        }
+        
+        boolean hasReport(AnalysisOptions options) {
+            return getReportFile(options).isFile();
+        }
+        
+        /**
+         * Copies the saved report to the writer. Reports are saved without a trailing
+         * line break, so they are replayed as is.
+         */
+        void copyReport(AnalysisOptions options, Writer writer) throws IOException {
+            try (Reader reader = new InputStreamReader(new FileInputStream(getReportFile(options)), StandardCharsets.UTF_8)) {
+                char[] buffer = new char[8192];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    writer.write(buffer, 0, read);
+                }
+            }
+        }
+        
+        void saveReport(AnalysisOptions options, Map<String, PropertyInfo> propertyMap) throws IOException {
+            try (Writer writer = new java.io.BufferedWriter(new java.io.OutputStreamWriter(
+                    new java.io.FileOutputStream(getReportFile(options)), StandardCharsets.UTF_8), 65536)) {
+                writeSchemaReport(propertyMap, options, writer);
+            }
+        }
+        
+        private File getReportFile(AnalysisOptions options) {
+            // Reports differ only by what the analyzer tracks
+            return new File(dir, key + ".report-" + sha256Hex(options.describe()).substring(0, 16) + ".json");
+        }
+        
+        private CacheEntry loadEntry() {
+            File meta = new File(dir, key + ".meta.json");
+            if (!meta.isFile()) {
+                return null;
+            }
+            try {
+                CacheEntry loaded = new Gson().fromJson(readFile(meta.getPath()), CacheEntry.class);
+                // Guard against hash collisions and foreign files
+                return loaded != null && url.equals(loaded.url) ? loaded : null;
+            } catch (IOException | JsonSyntaxException e) {
+                return null;
+            }
+        }
+        
+        private static String sha256Hex(String value) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                StringBuilder hex = new StringBuilder();
+                for (byte b : digest.digest(value.getBytes(StandardCharsets.UTF_8))) {
+                    hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+                    hex.append(Character.forDigit(b & 0xf, 16));
+                }
+                return hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+    
+    private static class CacheEntry {
+        String url;
+        String etag;
+        String lastModified;
+        String charset;
+    }
+    
+    private static java.nio.charset.Charset getEntityCharset(HttpEntity entity) {
+        try {
+            ContentType contentType = ContentType.get(entity);
+            if (contentType != null && contentType.getCharset() != null) {
+                return contentType.getCharset();
+            }
+        } catch (RuntimeException e) {
+            // Unparseable or unsupported charset; fall back to the JSON default below
+        }
+        return StandardCharsets.UTF_8;
+    }
+    
+    private static void processJsonFile(String jsonFilePath, boolean dumpSchemaReport, boolean noDataDump, 
+                                       AnalysisOptions options, String reportFile) {
+        try {
+            System.out.println("Reading JSON from file: " + jsonFilePath);
+            System.out.println(repeat("-", 50));
+            
+            File file = checkJsonFile(jsonFilePath);
+            if (file == null) {
+                System.err.println("Error: Could not read JSON content from file: " + jsonFilePath);
+                return;
+            }
+            
+            // Output JSON content (unless suppressed), copied straight from the file
+            if (!noDataDump) {
+                System.out.println("JSON Content:");
+                System.out.println(repeat("-", 50));
+                copyFileToConsole(file);
+            }
+            
+            // Generate schema report if requested. The file is analyzed as a token
+            // stream so large files never have to fit in memory.
+            if (dumpSchemaReport) {
+                System.out.println();
+                System.out.println();
+                try (Reader reader = new InputStreamReader(openJsonFileStream(file), StandardCharsets.UTF_8)) {
+                    Map<String, PropertyInfo> propertyMap = analyzeJsonStream(reader, options);
+                    if (propertyMap != null) {
+                        outputSchemaReport(propertyMap, options, reportFile);
                     }
-                    
-                    dataTypesList.add(dataTypeInfo);
                 }
-                
-                propertyReport.put("dataTypes", dataTypesList);
-                properties.add(propertyReport);
             }
             
-            reportMap.put("schemaReport", properties);
+        } catch (Exception e) {
+            System.err.println("Error processing JSON file: " + e.getMessage());
+        }
+    }
+    
+    private static void processJsonLinesFile(String jsonFilePath, boolean dumpSchemaReport, boolean noDataDump, 
+                                            AnalysisOptions options, String reportFile, int threads) {
+        try {
+            System.out.println("Reading JSON Lines from file: " + jsonFilePath);
+            System.out.println(repeat("-", 50));
+            
+            File file = checkJsonFile(jsonFilePath);
+            if (file == null) {
+                System.err.println("Error: Could not read JSON content from file: " + jsonFilePath);
+                return;
+            }
             
-            // Output as formatted JSON
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            return gson.toJson(reportMap);
+            if (!noDataDump) {
+                System.out.println("JSON Content:");
+                System.out.println(repeat("-", 50));
+                copyFileToConsole(file);
+            }
             
-        } catch (JsonSyntaxException e) {
-            System.err.println("Error parsing JSON for schema report: " + e.getMessage());
-            System.err.println("Response preview (first 500 chars):");
-            if (jsonResponse != null) {
-                String preview = jsonResponse.length() > 500 ? jsonResponse.substring(0, 500) + "..." : jsonResponse;
-                System.err.println(preview);
+            if (dumpSchemaReport) {
+                System.out.println();
+                System.out.println();
+                Map<String, PropertyInfo> propertyMap = analyzeJsonLinesFile(file, options, threads, 
+                                                                             countJsonLinesChunks(file.length(), options, threads));
+                if (propertyMap != null) {
+                    outputSchemaReport(propertyMap, options, reportFile);
+                }
             }
-            System.err.println("\nThe response may not be valid JSON. Common causes:");
-            System.err.println("  - The API returned HTML (error page) instead of JSON");
-            System.err.println("  - The API returned plain text");
-            System.err.println("  - The response is malformed JSON");
-            System.err.println("\nTip: Use --noDataDump to suppress response body and see only this error.");
-            return null;
+            
         } catch (Exception e) {
-            System.err.println("Error generating schema report: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+            System.err.println("Error processing JSON Lines file: " + e.getMessage());
+        }
+    }
+    
+    // Smallest byte range handed to a JSON Lines worker; smaller files are split into fewer chunks
+    private static final long JSON_LINES_MIN_CHUNK_BYTES = 1 << 20;
+    // Chunk limit when the chunks must not depend on the number of threads
+    private static final int JSON_LINES_MAX_CHUNKS = 64;
+    
+    /**
+     * Returns the number of ranges to split a JSON Lines byte range into. Merged top values
+     * and quantile sketches depend on where the input was split, so with --topValues or
+     * --quantiles the split depends only on the size, and the report is the same for any
+     * number of threads.
+     */
+    private static int countJsonLinesChunks(long bytes, AnalysisOptions options, int threads) {
+        long limit = options.topValues > 0 || options.quantiles ? JSON_LINES_MAX_CHUNKS : threads * 4L;
+        return Math.max(1, (int) Math.min(limit, bytes / JSON_LINES_MIN_CHUNK_BYTES));
+    }
+    
+    /**
+     * Analyzes a JSON Lines file by splitting it into line-aligned byte ranges that
+     * are analyzed on a worker pool, each into its own property map. The maps are
+     * merged in file order, so the report matches a sequential pass over the records.
+     * Returns null if any record could not be parsed.
+     */
+    private static Map<String, PropertyInfo> analyzeJsonLinesFile(File file, AnalysisOptions options, 
+                                                                  int threads, int chunks) throws IOException, InterruptedException {
+        if (isCompressedFile(file)) {
+            // Compressed files cannot be split by byte offset, so decompress them once
+            // and hand batches of lines to the workers instead
+            try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+                    openJsonFileStream(file), StandardCharsets.UTF_8), 65536)) {
+                return analyzeJsonLinesStream(lines, options, threads);
+            }
+        }
+        
+        return analyzeJsonLinesRanges(file, splitIntoLineRanges(file, 0, file.length(), chunks), options, threads);
+    }
+    
+    /**
+     * Analyzes line-aligned byte ranges of a JSON Lines file on a worker pool and merges
+     * the results in file order. Returns null if any record could not be parsed.
+     */
+    private static Map<String, PropertyInfo> analyzeJsonLinesRanges(File file, List<long[]> ranges, AnalysisOptions options,
+                                                                    int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, ranges.size())));
+        try {
+            List<Future<Map<String, PropertyInfo>>> futures = new ArrayList<>();
+            for (final long[] range : ranges) {
+                futures.add(pool.submit(() -> analyzeJsonLinesRange(file, range[0], range[1], options)));
+            }
+            
+            Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+            for (Future<Map<String, PropertyInfo>> future : futures) {
+                try {
+                    mergePropertyMaps(propertyMap, future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    System.err.println("Error parsing JSON Lines file: " + cause.getMessage());
+                    return null;
+                }
+            }
+            return propertyMap;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    // Number of lines handed to a worker at a time when JSON Lines come from a stream
+    private static final int JSON_LINES_BATCH_SIZE = 4096;
+    
+    /**
+     * Analyzes JSON Lines read sequentially from a reader. Batches of lines are
+     * analyzed on a worker pool and merged in order, with a bounded number of
+     * batches in flight. Returns null if any record could not be parsed.
+     */
+    private static Map<String, PropertyInfo> analyzeJsonLinesStream(BufferedReader lines, AnalysisOptions options, 
+                                                                    int threads) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+            Deque<Future<Map<String, PropertyInfo>>> inFlight = new ArrayDeque<>();
+            List<String> batch = new ArrayList<>();
+            long firstLine = 1;
+            String line;
+            while (true) {
+                line = lines.readLine();
+                if (line != null) {
+                    batch.add(line);
+                }
+                if (batch.size() == JSON_LINES_BATCH_SIZE || (line == null && !batch.isEmpty())) {
+                    final List<String> records = batch;
+                    final long recordsFirstLine = firstLine;
+                    inFlight.add(pool.submit(() -> analyzeJsonLinesBatch(records, recordsFirstLine, options)));
+                    firstLine += batch.size();
+                    batch = new ArrayList<>();
+                }
+                while (!inFlight.isEmpty() && (line == null || inFlight.size() > threads * 2)) {
+                    try {
+                        mergePropertyMaps(propertyMap, inFlight.poll().get());
+                    } catch (ExecutionException e) {
+                        System.err.println("Error parsing JSON Lines file: " + e.getCause().getMessage());
+                        return null;
+                    }
+                }
+                if (line == null) {
+                    return propertyMap;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private static Map<String, PropertyInfo> analyzeJsonLinesBatch(List<String> lines, long firstLine, 
+                                                                   AnalysisOptions options) throws IOException {
+        Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+        StreamingAnalyzer analyzer = new StreamingAnalyzer(null, propertyMap, options);
+        for (int i = 0; i < lines.size(); i++) {
+            try {
+                analyzeJsonLine(analyzer, lines.get(i));
+            } catch (IOException | RuntimeException e) {
+                throw new IOException("Invalid record on line " + (firstLine + i) + ": " + e.getMessage(), e);
+            }
+        }
+        return propertyMap;
+    }
+    
+    /**
+     * Splits the bytes from start to end of a file into at most the given number of
+     * ranges, moving every boundary forward to the start of the next line.
+     */
+    private static List<long[]> splitIntoLineRanges(File file, long start, long end, int chunks) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        long origin = start;
+        long length = end - start;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            for (int i = 1; i <= chunks && start < end; i++) {
+                long boundary = i == chunks ? end : alignToLineStart(raf, Math.max(start, origin + length * i / chunks));
+                boundary = Math.min(boundary, end);
+                if (boundary > start) {
+                    ranges.add(new long[] { start, boundary });
+                }
+                start = boundary;
+            }
+        }
+        return ranges;
+    }
+    
+    /**
+     * Moves a byte offset forward past the next line break. Every process computes the
+     * same boundaries from the same offsets, so shards never overlap or leave gaps.
+     */
+    private static long alignToLineStart(RandomAccessFile raf, long position) throws IOException {
+        long size = raf.length();
+        if (position <= 0 || position >= size) {
+            return Math.max(0, Math.min(position, size));
+        }
+        raf.seek(position);
+        int b;
+        while ((b = raf.read()) != -1 && b != '\n') {
+            position++;
+        }
+        return Math.min(size, position + 1);
+    }
+    
+    /**
+     * Worker mode. Analyzes the shard-th of count line-aligned byte ranges of a JSON Lines
+     * file on the local threads and saves the partial state, in the checkpoint format, for
+     * a coordinator to merge. The manifest records the file and shard the state covers.
+     */
+    private static void runJsonLinesWorker(String jsonFilePath, String shardSpec, String partialOutput,
+                                           AnalysisOptions options, int threads) {
+        int[] shard = parseShard(shardSpec);
+        if (shard == null) {
+            System.err.println("Error: --shard expects I/N with 0 <= I < N but got '" + shardSpec + "'");
+            System.exit(1);
+        }
+        if (partialOutput == null || partialOutput.trim().isEmpty()) {
+            System.err.println("Error: --shard requires --partialOutput");
+            System.exit(1);
+        }
+        File file = checkJsonFile(jsonFilePath);
+        if (file == null) {
+            System.exit(1);
+        }
+        
+        try {
+            if (isCompressedFile(file)) {
+                System.err.println("Error: Compressed files cannot be split into shards: " + jsonFilePath);
+                System.exit(1);
+            }
+            long start;
+            long end;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                start = alignToLineStart(raf, file.length() * shard[0] / shard[1]);
+                end = alignToLineStart(raf, file.length() * (shard[0] + 1) / shard[1]);
+            }
+            System.out.println("Shard " + shard[0] + "/" + shard[1] + " of " + jsonFilePath + ": bytes " + start + "-" + end);
+            
+            Map<String, PropertyInfo> propertyMap = analyzeJsonLinesRanges(file, 
+                    splitIntoLineRanges(file, start, end, countJsonLinesChunks(end - start, options, threads)), options, threads);
+            if (propertyMap == null) {
+                System.exit(1);
+            }
+            
+            Checkpoint partial = new Checkpoint();
+            partial.manifest.put(file.getAbsolutePath() + "#" + shard[0] + "/" + shard[1], 
+                                 new long[] { file.length(), file.lastModified() });
+            partial.propertyMap = propertyMap;
+            partial.save(new File(partialOutput), options);
+            System.out.println("Partial state written to: " + partialOutput);
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Error analyzing shard: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    private static int[] parseShard(String shardSpec) {
+        String[] parts = shardSpec == null ? new String[0] : shardSpec.trim().split("/");
+        try {
+            if (parts.length == 2) {
+                int index = Integer.parseInt(parts[0].trim());
+                int count = Integer.parseInt(parts[1].trim());
+                if (index >= 0 && index < count) {
+                    return new int[] { index, count };
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Reported by the caller
+        }
+        return null;
+    }
+    
+    /**
+     * Coordinator mode that runs the workers itself: starts one local JVM per shard with
+     * the same arguments, splitting the threads between them, then merges their partial
+     * states. Workers on other machines are merged with --mergePartials instead.
+     */
+    private static void coordinateJsonLinesWorkers(String jsonFilePath, int workers, String[] args, AnalysisOptions options,
+                                                   String reportFile, int threads) {
+        File partialDir = null;
+        List<Process> processes = new ArrayList<>();
+        try {
+            partialDir = java.nio.file.Files.createTempDirectory("apidumper-partials").toFile();
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            List<String> partials = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                File partial = new File(partialDir, "part-" + i + ".ckpt");
+                partials.add(partial.getPath());
+                List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"), 
+                                                                     ApiDumper.class.getName()));
+                command.addAll(withoutOptions(args, "workers", "threads", "reportFile", "f"));
+                command.addAll(Arrays.asList("--shard", i + "/" + workers, "--partialOutput", partial.getPath(),
+                                             "--threads", String.valueOf(Math.max(1, threads / workers)), "--noDataDump"));
+                processes.add(new ProcessBuilder(command).inheritIO().start());
+            }
+            System.out.println("Started " + workers + " worker process(es) for " + jsonFilePath);
+            
+            for (int i = 0; i < processes.size(); i++) {
+                int exitCode = processes.get(i).waitFor();
+                if (exitCode != 0) {
+                    System.err.println("Error: Worker " + i + " failed with exit code " + exitCode);
+                    return;
+                }
+            }
+            mergePartialStates(String.join(",", partials), options, reportFile);
+        } catch (IOException e) {
+            System.err.println("Error starting worker processes: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Coordinator interrupted");
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            if (partialDir != null) {
+                File[] files = partialDir.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+                partialDir.delete();
+            }
+        }
+    }
+    
+    /**
+     * Returns the command line arguments without the given long or short options and their values.
+     */
+    private static List<String> withoutOptions(String[] args, String... names) {
+        Set<String> dropped = new HashSet<>();
+        for (String name : names) {
+            dropped.add(name.length() == 1 ? "-" + name : "--" + name);
+        }
+        List<String> kept = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i].contains("=") ? args[i].substring(0, args[i].indexOf('=')) : args[i];
+            if (!dropped.contains(name)) {
+                kept.add(args[i]);
+            } else if (!args[i].contains("=")) {
+                i++;
+            }
+        }
+        return kept;
+    }
+    
+    /**
+     * Coordinator mode. Merges the partial states of --shard workers in shard order, which
+     * gives the same report as analyzing the file in one process, apart from top values and
+     * quantiles: their summaries are merged per shard, so they stay within their error bounds
+     * but depend on the shard count. All partials must come from the same file and shard
+     * count, and be built with the given analysis options.
+     */
+    private static void mergePartialStates(String partials, AnalysisOptions options, String reportFile) {
+        try {
+            List<File> files = new ArrayList<>();
+            for (String item : partials.split(",")) {
+                item = item.trim();
+                if (!item.isEmpty()) {
+                    files.addAll(isJsonFileSet(item) ? listJsonFiles(item) : Collections.singletonList(new File(item)));
+                }
+            }
+            
+            // Shard index to state; every partial covers one shard of the same file
+            TreeMap<Integer, Checkpoint> shards = new TreeMap<>();
+            String source = null;
+            int shardCount = 0;
+            for (File file : files) {
+                Checkpoint partial = Checkpoint.load(file);
+                if (!partial.options.equals(options.describe())) {
+                    System.err.println("Error: " + file.getPath() + " was analyzed with other options (" + partial.options 
+                                       + "); pass the workers' analysis options");
+                    return;
+                }
+                for (String key : partial.manifest.keySet()) {
+                    int separator = key.lastIndexOf('#');
+                    int[] shard = separator < 0 ? null : parseShard(key.substring(separator + 1));
+                    if (shard == null) {
+                        System.err.println("Error: " + file.getPath() + " is not a partial state of a --shard worker");
+                        return;
+                    }
+                    String shardSource = key.substring(0, separator);
+                    if (source != null && (!source.equals(shardSource) || shardCount != shard[1])) {
+                        System.err.println("Error: " + file.getPath() + " covers shard " + key + ", which does not belong to " 
+                                           + source + " in " + shardCount + " shards");
+                        return;
+                    }
+                    source = shardSource;
+                    shardCount = shard[1];
+                    if (shards.put(shard[0], partial) != null) {
+                        System.err.println("Error: Shard " + shard[0] + " appears more than once");
+                        return;
+                    }
+                }
+            }
+            if (source == null) {
+                System.err.println("Error: No partial states match: " + partials);
+                return;
+            }
+            if (shards.size() != shardCount) {
+                System.err.println("Warning: Only " + shards.size() + " of " + shardCount + " shards of " + source 
+                                   + " were found; the report covers part of the file");
+            }
+            
+            Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+            for (Checkpoint partial : shards.values()) {
+                mergePropertyMaps(propertyMap, partial.propertyMap);
+            }
+            System.out.println("Merged " + shards.size() + " partial state(s) of " + source);
+            if (shards.size() > 1 && (options.topValues > 0 || options.quantiles)) {
+                System.out.println("Note: top values, quantiles and histograms are merged from per-shard summaries; "
+                                   + "they stay within their error bounds but can differ from a single-process run");
+            }
+            outputSchemaReport(propertyMap, options, reportFile);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error merging partial states: " + e.getMessage());
+        }
+    }
+    
+    private static Map<String, PropertyInfo> analyzeJsonLinesRange(File file, long start, long end, 
+                                                                   AnalysisOptions options) throws IOException {
+        Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+        StreamingAnalyzer analyzer = new StreamingAnalyzer(null, propertyMap, options);
+        try (FileInputStream in = new FileInputStream(file)) {
+            in.getChannel().position(start);
+            BufferedReader lines = new BufferedReader(new InputStreamReader(
+                    new BoundedInputStream(in, end - start), StandardCharsets.UTF_8), 65536);
+            String line;
+            long lineInRange = 0;
+            while ((line = lines.readLine()) != null) {
+                lineInRange++;
+                try {
+                    analyzeJsonLine(analyzer, line);
+                } catch (IOException | RuntimeException e) {
+                    long lineInFile = countLinesBefore(file, start) + lineInRange;
+                    throw new IOException("Invalid record on line " + lineInFile + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return propertyMap;
+    }
+    
+    /**
+     * Counts the lines before an offset that starts a line, the way readLine splits them.
+     * Only needed to report where a bad record is, so the extra scan is left to that case.
+     */
+    private static long countLinesBefore(File file, long offset) throws IOException {
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+                new BoundedInputStream(new FileInputStream(file), offset), StandardCharsets.UTF_8), 65536)) {
+            long count = 0;
+            while (lines.readLine() != null) {
+                count++;
+            }
+            return count;
+        }
+    }
+    
+    private static void analyzeJsonLine(StreamingAnalyzer analyzer, String line) throws IOException {
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        JsonReader reader = new JsonReader(new java.io.StringReader(line));
+        reader.setLenient(true);
+        analyzer.analyzeDocument(reader);
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonSyntaxException("Did not consume the entire record.");
+        }
+    }
+    
+    /**
+     * InputStream that stops after a fixed number of bytes of the wrapped stream.
+     */
+    private static class BoundedInputStream extends java.io.FilterInputStream {
+        private long remaining;
+        
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+        
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+    
+    /**
+     * InputStream that copies every chunk it reads to an optional output stream.
+     */
+    private static class TeeInputStream extends java.io.FilterInputStream {
+        private final java.io.OutputStream copy;
+        private int lastByte = '\n';
+        
+        TeeInputStream(InputStream in, java.io.OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1 && copy != null) {
+                copy.write(b);
+                lastByte = b;
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0 && copy != null) {
+                copy.write(b, off, read);
+                lastByte = b[off + read - 1];
+            }
+            return read;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must still be copied, so read them instead
+            byte[] buffer = new byte[(int) Math.min(8192, Math.max(0, n))];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+        
+        void drain() throws IOException {
+            byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) != -1) {
+                // Reading is enough; the tee does the copying
+            }
+        }
+        
+        void finishLine() throws IOException {
+            if (copy != null) {
+                if (lastByte != '\n') {
+                    copy.write('\n');
+                }
+                copy.flush();
+            }
+        }
+    }
+    
+    private static boolean isJsonFileSet(String jsonFilePath) {
+        return new File(jsonFilePath).isDirectory() || jsonFilePath.matches(".*[*?\\[{].*");
+    }
+    
+    /**
+     * Directory / glob mode. Every matching file is analyzed on a ForkJoinPool into
+     * its own property map, and the maps are merged pairwise in file order. With a
+     * checkpoint file, the files it lists are skipped and the new ones are folded into
+     * its state, which is then saved again.
+     */
+    private static void processJsonFileSet(String jsonFilePath, boolean jsonLines, boolean dumpSchemaReport, 
+                                           AnalysisOptions options, String reportFile, int threads,
+                                           String checkpointPath) {
+        try {
+            System.out.println("Reading JSON from files: " + jsonFilePath);
+            System.out.println(repeat("-", 50));
+            
+            List<File> files = listJsonFiles(jsonFilePath);
+            if (files.isEmpty() && checkpointPath == null) {
+                System.err.println("Error: No files match: " + jsonFilePath);
+                return;
+            }
+            System.out.println("Found " + files.size() + " file(s)");
+            
+            Checkpoint checkpoint = null;
+            if (checkpointPath != null) {
+                // The checkpoint may live next to the captures
+                File checkpointFile = new File(checkpointPath).getAbsoluteFile();
+                files.removeIf(file -> file.getAbsoluteFile().equals(checkpointFile) 
+                               || file.getAbsolutePath().equals(checkpointFile.getPath() + ".tmp"));
+                checkpoint = loadCheckpoint(checkpointFile, options, files);
+                List<File> added = new ArrayList<>();
+                for (File file : files) {
+                    if (!checkpoint.manifest.containsKey(file.getAbsolutePath())) {
+                        added.add(file);
+                    }
+                }
+                System.out.println((files.size() - added.size()) + " file(s) already analyzed in checkpoint " 
+                                   + checkpointPath + ", " + added.size() + " new");
+                files = added;
+            }
+            
+            if (dumpSchemaReport || checkpoint != null) {
+                Set<File> failed = java.util.concurrent.ConcurrentHashMap.newKeySet();
+                Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+                if (!files.isEmpty()) {
+                    ForkJoinPool pool = new ForkJoinPool(threads);
+                    try {
+                        propertyMap = pool.invoke(new FileSetAnalysisTask(files, 0, files.size(), jsonLines, 
+                                                                          options, failed));
+                    } finally {
+                        pool.shutdown();
+                    }
+                }
+                
+                if (!failed.isEmpty()) {
+                    System.err.println("Warning: " + failed.size() + " of " + files.size() 
+                            + " file(s) could not be analyzed and were skipped");
+                }
+                
+                if (checkpoint != null) {
+                    mergePropertyMaps(checkpoint.propertyMap, propertyMap);
+                    propertyMap = checkpoint.propertyMap;
+                    for (File file : files) {
+                        // Files that failed are tried again next time
+                        if (!failed.contains(file)) {
+                            checkpoint.manifest.put(file.getAbsolutePath(), new long[] { file.length(), file.lastModified() });
+                        }
+                    }
+                    checkpoint.save(new File(checkpointPath), options);
+                    System.out.println("Checkpoint written to: " + checkpointPath);
+                }
+                
+                if (dumpSchemaReport) {
+                    System.out.println();
+                    System.out.println();
+                    outputSchemaReport(propertyMap, options, reportFile);
+                }
+            }
+            
+        } catch (Exception e) {
+            System.err.println("Error processing JSON files: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Loads the checkpoint to continue from, or starts an empty one when the file does
+     * not exist, cannot be read, was built with other analysis options, or lists a file
+     * whose length or modification time has changed since (its old contribution cannot
+     * be taken out of the state). Files that were removed stay counted in the state.
+     */
+    private static Checkpoint loadCheckpoint(File file, AnalysisOptions options, List<File> files) {
+        if (!file.isFile()) {
+            return new Checkpoint();
+        }
+        Checkpoint checkpoint;
+        try {
+            checkpoint = Checkpoint.load(file);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Warning: Cannot read checkpoint " + file.getPath() + " (" + e.getMessage() 
+                               + "); analyzing all files");
+            return new Checkpoint();
+        }
+        if (!checkpoint.options.equals(options.describe())) {
+            System.err.println("Warning: Checkpoint " + file.getPath() + " was written with other analysis options; "
+                               + "analyzing all files");
+            return new Checkpoint();
+        }
+        for (File current : files) {
+            long[] recorded = checkpoint.manifest.get(current.getAbsolutePath());
+            if (recorded != null && (recorded[0] != current.length() || recorded[1] != current.lastModified())) {
+                System.err.println("Warning: " + current.getPath() + " changed since checkpoint " + file.getPath() 
+                                   + " was written; analyzing all files");
+                return new Checkpoint();
+            }
+        }
+        return checkpoint;
+    }
+    
+    /**
+     * Lists the regular files in a directory (recursively) or matching a glob pattern
+     * such as "captures/*.json.gz" ("**" also matches nested directories), sorted by path.
+     */
+    private static List<File> listJsonFiles(String jsonFilePath) throws IOException {
+        java.nio.file.Path base;
+        java.nio.file.PathMatcher matcher;
+        File asFile = new File(jsonFilePath);
+        if (asFile.isDirectory()) {
+            base = asFile.toPath();
+            matcher = path -> true;
+        } else {
+            // The base directory is everything before the first path segment with a glob character
+            String normalized = jsonFilePath.replace('\\', '/');
+            int firstGlob = normalized.length();
+            for (char c : new char[] { '*', '?', '[', '{' }) {
+                int index = normalized.indexOf(c);
+                if (index >= 0) {
+                    firstGlob = Math.min(firstGlob, index);
+                }
+            }
+            int lastSeparator = normalized.lastIndexOf('/', firstGlob);
+            base = java.nio.file.Paths.get(lastSeparator < 0 ? "." : normalized.substring(0, lastSeparator + 1));
+            String pattern = normalized.substring(lastSeparator + 1);
+            java.nio.file.PathMatcher glob = java.nio.file.FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            final java.nio.file.Path root = base;
+            matcher = path -> glob.matches(root.relativize(path));
+        }
+        
+        List<File> files = new ArrayList<>();
+        if (!java.nio.file.Files.isDirectory(base)) {
+            return files;
+        }
+        final java.nio.file.PathMatcher fileMatcher = matcher;
+        try (java.util.stream.Stream<java.nio.file.Path> paths = java.nio.file.Files.walk(base)) {
+            paths.filter(path -> java.nio.file.Files.isRegularFile(path) && fileMatcher.matches(path))
+                 .sorted()
+                 .forEach(path -> files.add(path.toFile()));
+        }
+        return files;
+    }
+    
+    private static class FileSetAnalysisTask extends RecursiveTask<Map<String, PropertyInfo>> {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<File> files;
+        private final int start;
+        private final int end;
+        private final boolean jsonLines;
+        private final AnalysisOptions options;
+        private final Set<File> failed;
+        
+        FileSetAnalysisTask(List<File> files, int start, int end, boolean jsonLines, AnalysisOptions options,
+                            Set<File> failed) {
+            this.files = files;
+            this.start = start;
+            this.end = end;
+            this.jsonLines = jsonLines;
+            this.options = options;
+            this.failed = failed;
+        }
+        
+        @Override
+        protected Map<String, PropertyInfo> compute() {
+            if (end - start == 1) {
+                return analyzeFile(files.get(start));
+            }
+            int middle = (start + end) >>> 1;
+            FileSetAnalysisTask left = new FileSetAnalysisTask(files, start, middle, jsonLines, options, failed);
+            FileSetAnalysisTask right = new FileSetAnalysisTask(files, middle, end, jsonLines, options, failed);
+            left.fork();
+            Map<String, PropertyInfo> rightMap = right.compute();
+            Map<String, PropertyInfo> leftMap = left.join();
+            mergePropertyMaps(leftMap, rightMap);
+            return leftMap;
+        }
+        
+        private Map<String, PropertyInfo> analyzeFile(File file) {
+            Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+            try (Reader reader = new InputStreamReader(openJsonFileStream(file), StandardCharsets.UTF_8)) {
+                if (jsonLines) {
+                    StreamingAnalyzer analyzer = new StreamingAnalyzer(null, propertyMap, options);
+                    BufferedReader lines = new BufferedReader(reader, 65536);
+                    String line;
+                    while ((line = lines.readLine()) != null) {
+                        analyzeJsonLine(analyzer, line);
+                    }
+                    return propertyMap;
+                }
+                Map<String, PropertyInfo> analyzed = analyzeJsonStream(reader, options);
+                if (analyzed != null) {
+                    return analyzed;
+                }
+                System.err.println("Skipping file: " + file.getPath());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Skipping file " + file.getPath() + ": " + e.getMessage());
+            }
+            failed.add(file);
+            return new LinkedHashMap<>();
+        }
+    }
+    
+    /**
+     * Analysis state saved between runs of directory / glob mode: the description of the
+     * analysis options it was built with, a manifest of the analyzed files with their
+     * length and modification time, and the accumulated property map. The file is a
+     * gzip-compressed DataOutputStream stream, written to a temporary file and renamed
+     * so an interrupted run leaves the previous checkpoint intact.
+     */
+    private static class Checkpoint {
+        private static final int MAGIC = 0x41504443;
+        // Version 2 stores occurrence counts as longs
+        private static final int VERSION = 2;
+        
+        String options = "";
+        // Absolute file path to {length, last modified}
+        Map<String, long[]> manifest = new LinkedHashMap<>();
+        Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+        
+        static Checkpoint load(File file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(
+                    new java.util.zip.GZIPInputStream(new FileInputStream(file), 65536)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("not a checkpoint file");
+                }
+                int version = in.readInt();
+                if (version != VERSION) {
+                    throw new IOException("unsupported checkpoint version " + version);
+                }
+                Checkpoint checkpoint = new Checkpoint();
+                checkpoint.options = readString(in);
+                int files = in.readInt();
+                for (int i = 0; i < files; i++) {
+                    checkpoint.manifest.put(readString(in), new long[] { in.readLong(), in.readLong() });
+                }
+                int properties = in.readInt();
+                for (int i = 0; i < properties; i++) {
+                    checkpoint.propertyMap.put(readString(in), PropertyInfo.readFrom(in));
+                }
+                return checkpoint;
+            }
+        }
+        
+        void save(File file, AnalysisOptions analysisOptions) throws IOException {
+            File temp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new java.io.BufferedOutputStream(
+                    new java.util.zip.GZIPOutputStream(new java.io.FileOutputStream(temp), 65536)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, analysisOptions.describe());
+                out.writeInt(manifest.size());
+                for (Map.Entry<String, long[]> entry : manifest.entrySet()) {
+                    writeString(out, entry.getKey());
+                    out.writeLong(entry.getValue()[0]);
+                    out.writeLong(entry.getValue()[1]);
+                }
+                out.writeInt(propertyMap.size());
+                for (Map.Entry<String, PropertyInfo> entry : propertyMap.entrySet()) {
+                    writeString(out, entry.getKey());
+                    entry.getValue().writeTo(out);
+                }
+            }
+            java.nio.file.Files.move(temp.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        /**
+         * Writes a string as its UTF-8 length and bytes; unlike writeUTF, any length is allowed.
+         */
+        static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        
+        static String readString(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        static void writeNullableString(DataOutputStream out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                writeString(out, value);
+            }
+        }
+        
+        static String readNullableString(DataInputStream in) throws IOException {
+            return in.readBoolean() ? readString(in) : null;
+        }
+        
+        static void writeCounts(DataOutputStream out, Map<String, Long> counts) throws IOException {
+            out.writeInt(counts.size());
+            for (Map.Entry<String, Long> count : counts.entrySet()) {
+                writeString(out, count.getKey());
+                out.writeLong(count.getValue());
+            }
+        }
+        
+        static Map<String, Long> readCounts(DataInputStream in) throws IOException {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                counts.put(readString(in), in.readLong());
+            }
+            return counts;
+        }
+    }
+    
+    private static File checkJsonFile(String filePath) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            System.err.println("Error: File does not exist: " + filePath);
+            return null;
+        }
+        
+        if (!file.canRead()) {
+            System.err.println("Error: Cannot read file: " + filePath);
+            return null;
+        }
+        
+        return file;
+    }
+    
+    /**
+     * Opens a JSON input file, decompressing gzip or zlib/deflate content on the fly.
+     */
+    private static InputStream openJsonFileStream(File file) throws IOException {
+        return decompressIfNeeded(new FileInputStream(file));
+    }
+    
+    private static boolean isCompressedFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return getCompression(in.read(), in.read()) != null;
+        }
+    }
+    
+    /**
+     * Detects gzip or zlib content by its magic bytes and wraps the stream in the
+     * matching decompressor. Uncompressed streams are returned buffered but unchanged.
+     */
+    private static InputStream decompressIfNeeded(InputStream in) throws IOException {
+        java.io.BufferedInputStream buffered = new java.io.BufferedInputStream(in, 65536);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        
+        String compression = getCompression(first, second);
+        if ("gzip".equals(compression)) {
+            return new java.util.zip.GZIPInputStream(buffered, 65536);
+        } else if ("deflate".equals(compression)) {
+            return new java.util.zip.InflaterInputStream(buffered, new java.util.zip.Inflater(), 65536);
+        }
+        return buffered;
+    }
+    
+    private static String getCompression(int first, int second) {
+        if (first == 0x1f && second == 0x8b) {
+            return "gzip";
+        }
+        // zlib header: deflate method with a valid header checksum. No JSON text
+        // starts with 'x', so this cannot be mistaken for uncompressed input.
+        if (first == 0x78 && second != -1 && ((first << 8) | second) % 31 == 0) {
+            return "deflate";
+        }
+        return null;
+    }
+    
+    private static void copyFileToConsole(File file) throws IOException {
+        byte[] buffer = new byte[8192];
+        int lastByte = '\n';
+        try (InputStream in = openJsonFileStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                System.out.write(buffer, 0, read);
+                if (read > 0) {
+                    lastByte = buffer[read - 1];
+                }
+            }
+        }
+        if (lastByte != '\n') {
+            System.out.println();
+        }
+        System.out.flush();
+    }
+    
+    /**
+     * Analyzes one JSON document read from the reader into a new property map.
+     * Returns null after reporting the problem if the input is empty or not valid JSON.
+     */
+    private static Map<String, PropertyInfo> analyzeJsonStream(Reader jsonReader, AnalysisOptions options) {
+        Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+        StreamingAnalyzer analyzer = new StreamingAnalyzer(null, propertyMap, options);
+        if (options.threads <= 1) {
+            return analyzeJsonStream(jsonReader, analyzer) ? propertyMap : null;
+        }
+        ForkJoinPool pool = new ForkJoinPool(options.threads);
+        try {
+            analyzer.analyzeArraysOn(pool);
+            return analyzeJsonStream(jsonReader, analyzer) ? propertyMap : null;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Runs a configured analyzer over one JSON document read from the reader, adding
+     * to the analyzer's property map. Returns false after reporting the problem if the
+     * input is empty or not valid JSON.
+     */
+    private static boolean analyzeJsonStream(Reader jsonReader, StreamingAnalyzer analyzer) {
+        if (jsonReader == null) {
+            System.err.println("Error: Response body is empty. Cannot generate schema report.");
+            return false;
+        }
+        PreviewReader previewReader = new PreviewReader(jsonReader, 500);
+        try {
+            JsonReader reader = new JsonReader(previewReader);
+            // Match JsonParser, which parses leniently
+            reader.setLenient(true);
+            try {
+                reader.peek();
+            } catch (EOFException e) {
+                System.err.println("Error: Response body is empty. Cannot generate schema report.");
+                return false;
+            }
+            
+            analyzer.analyzeDocument(reader);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("Did not consume the entire document.");
+            }
+            
+            return true;
+            
+        } catch (JsonSyntaxException | IllegalStateException | NumberFormatException e) {
+            printJsonSyntaxError(e.getMessage(), previewReader.getPreview());
+            return false;
+        } catch (IOException e) {
+            // MalformedJsonException and EOFException both surface as IOExceptions
+            if (e instanceof EOFException || e instanceof com.google.gson.stream.MalformedJsonException) {
+                printJsonSyntaxError(e.getMessage(), previewReader.getPreview());
+            } else {
+                System.err.println("Error reading JSON for schema report: " + e.getMessage());
+            }
+            return false;
+        } catch (Exception e) {
+            System.err.println("Error generating schema report: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    private static void printJsonSyntaxError(String message, String preview) {
+        System.err.println("Error parsing JSON for schema report: " + message);
+        System.err.println("Response preview (first 500 chars):");
+        if (preview != null) {
+            System.err.println(preview);
+        }
+        System.err.println("\nThe response may not be valid JSON. Common causes:");
+        System.err.println("  - The API returned HTML (error page) instead of JSON");
+        System.err.println("  - The API returned plain text");
+        System.err.println("  - The response is malformed JSON");
+        System.err.println("\nTip: Use --noDataDump to suppress response body and see only this error.");
+    }
+    
+    private static Set<String> parseDistinctValueProps(String dumpDistinctValues) {
+        // Parse the properties to dump distinct values for
+        Set<String> distinctValueProps = new HashSet<>();
+        if (dumpDistinctValues != null && !dumpDistinctValues.trim().isEmpty()) {
+            String[] props = dumpDistinctValues.split(",");
+            for (String prop : props) {
+                distinctValueProps.add(prop.trim());
+            }
+        }
+        return distinctValueProps;
+    }
+    
+    private static AnalysisOptions parseAnalysisOptions(String dumpDistinctValues) {
+        AnalysisOptions options = new AnalysisOptions();
+        options.distinctValueProps = parseDistinctValueProps(dumpDistinctValues);
+        return options;
+    }
+    
+    /**
+     * Settings that control what the analyzer tracks for each property.
+     */
+    private static class AnalysisOptions implements java.io.Closeable {
+        // Properties whose distinct values are listed in the report
+        Set<String> distinctValueProps = new HashSet<>();
+        // HyperLogLog precision for approximate distinct counts, or 0 to count exactly
+        int distinctPrecision = 0;
+        // Worker threads for the elements of top-level arrays in a single document; 1 analyzes sequentially
+        int threads = 1;
+        // Number of most frequent values reported per property, or 0 for none
+        int topValues = 0;
+        // Whether numeric and datetime values are summarized in quantile sketches
+        boolean quantiles = false;
+        // Property paths to analyze or skip, or null to analyze everything
+        PathFilter pathFilter = null;
+        // Memory for large exact distinct value sets, or null to keep them on the heap
+        OffHeapMemory offHeap = null;
+        // Print run statistics with the report
+        boolean stats = false;
+        // Sample the elements of top-level arrays: a fixed number of them, or each with a probability
+        int sampleSize = 0;
+        double sampleFraction = 0;
+        
+        boolean isSampling() {
+            return sampleSize > 0 || sampleFraction > 0;
+        }
+        
+        /**
+         * Releases the off-heap memory once the analysis and its report are finished.
+         */
+        @Override
+        public void close() {
+            if (offHeap != null) {
+                try {
+                    offHeap.close();
+                } catch (IOException e) {
+                    System.err.println("Warning: could not remove the distinct value spill file: " + e.getMessage());
+                }
+            }
+        }
+        
+        /**
+         * Describes the settings that change the report, such as "id,name;hll14;top10".
+         * The thread count is left out since it never changes the result.
+         */
+        String describe() {
+            List<String> props = new ArrayList<>(distinctValueProps);
+            Collections.sort(props);
+            String description = String.join(",", props);
+            if (distinctPrecision > 0) {
+                description += ";hll" + distinctPrecision;
+            }
+            if (topValues > 0) {
+                description += ";top" + topValues;
+            }
+            if (quantiles) {
+                description += ";quantiles";
+            }
+            if (pathFilter != null) {
+                description += ";" + pathFilter;
+            }
+            if (isSampling()) {
+                description += ";sample" + (sampleSize > 0 ? sampleSize : sampleFraction);
+            }
+            return description;
+        }
+    }
+    
+    /**
+     * Writes the schema report straight from the accumulators, in the layout Gson's pretty
+     * printing produced for the equivalent map tree: two-space indent, HTML-safe escaping and
+     * null members left out. No tree or String of the whole report is built.
+     */
+    private static void writeSchemaReport(Map<String, PropertyInfo> propertyMap, AnalysisOptions options, 
+                                          Writer writer) throws IOException {
+        JsonWriter out = new JsonWriter(writer);
+        out.setIndent("  ");
+        out.setHtmlSafe(true);
+        out.setSerializeNulls(false);
+        // Gson.toJson writes leniently as well
+        out.setLenient(true);
+        out.beginObject();
+        out.name("schemaReport").beginArray();
+        for (Map.Entry<String, PropertyInfo> entry : propertyMap.entrySet()) {
+            writePropertyReport(out, entry.getKey(), entry.getValue(), options);
+        }
+        out.endArray();
+        out.endObject();
+        out.flush();
+    }
+    
+    private static void writePropertyReport(JsonWriter out, String propertyName, PropertyInfo info, 
+                                            AnalysisOptions options) throws IOException {
+        out.beginObject();
+        out.name("property").value(propertyName);
+        SampleStats sample = info.sample;
+        out.name("count").value(sample != null ? sample.scale(info.count) : info.count);
+        out.name("distinctValues").value(info.getDistinctCount());
+        if (options.distinctPrecision > 0 || info.distinctFloor > 0) {
+            out.name("distinctValuesEstimated").value(info.isDistinctCountEstimated());
+        }
+        if (sample != null) {
+            long[] bounds = sample.getCountBounds();
+            out.name("sampleSize").value(sample.sampledElements);
+            out.name("countLower").value(bounds[0]);
+            out.name("countUpper").value(bounds[1]);
+        }
+        
+        // Add distinct values array if requested
+        if (options.distinctValueProps.contains(propertyName)) {
+            out.name("distinctValuesArray");
+            new SortedDistinctValues(info.distinctValues, DISTINCT_SORT_RUN).writeTo(out);
+        }
+        
+        // Object and array properties have no primitive values to report
+        List<SpaceSaving.Counter> topCounters = info.topValues != null ? info.topValues.getTop() : Collections.emptyList();
+        if (!topCounters.isEmpty()) {
+            out.name("topValues").beginArray();
+            for (SpaceSaving.Counter counter : topCounters) {
+                out.beginObject();
+                out.name("value").value(counter.value);
+                out.name("count").value(sample != null ? sample.scale(counter.count) : counter.count);
+                if (counter.error > 0) {
+                    out.name("error").value(sample != null ? sample.scale(counter.error) : counter.error);
+                }
+                out.endObject();
+            }
+            out.endArray();
+        }
+        
+        // Write data types array
+        out.name("dataTypes").beginArray();
+        for (Map.Entry<String, Object> typeEntry : info.typeExamples.entrySet()) {
+            String dataType = typeEntry.getKey();
+            out.beginObject();
+            out.name("type").value(dataType);
+            long typeCount = info.typeCounts.getOrDefault(dataType, 0L);
+            out.name("count").value(sample != null ? sample.scale(typeCount) : typeCount);
+            writeExampleValue(out.name("example"), typeEntry.getValue());
+            
+            // Add inferred types for strings with their counts
+            if (dataType.equals("string") && info.inferredTypesSet.containsKey(dataType)) {
+                Map<String, Long> inferredCounts = info.inferredTypeCounts.get(dataType);
+                out.name("inferredTypes").beginArray();
+                for (String inferredType : info.inferredTypesSet.get(dataType)) {
+                    out.beginObject();
+                    out.name("type").value(inferredType);
+                    long inferredCount = inferredCounts.getOrDefault(inferredType, 0L);
+                    out.name("count").value(sample != null ? sample.scale(inferredCount) : inferredCount);
+                    out.endObject();
+                }
+                out.endArray();
+            }
+            
+            Map<String, ValueRange> typeRanges = info.ranges.get(dataType);
+            if (typeRanges != null) {
+                writeValueRanges(out, typeRanges);
+                writeQuantiles(out, info, typeRanges.keySet(), sample);
+            }
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
+    
+    private static void writeExampleValue(JsonWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else if (value instanceof Boolean) {
+            out.value((Boolean) value);
+        } else if (value instanceof Number) {
+            out.value((Number) value);
+        } else {
+            out.value(value.toString());
+        }
+    }
+    
+    private static void writeValueRanges(JsonWriter out, Map<String, ValueRange> typeRanges) throws IOException {
+        boolean hasValues = false;
+        for (ValueRange range : typeRanges.values()) {
+            hasValues |= range.minText != null;
+        }
+        if (!hasValues) {
+            return;
+        }
+        out.name("minValues").beginObject();
+        for (Map.Entry<String, ValueRange> range : typeRanges.entrySet()) {
+            if (range.getValue().minText != null) {
+                out.name(range.getKey()).value(range.getValue().minText);
+            }
+        }
+        out.endObject();
+        out.name("maxValues").beginObject();
+        for (Map.Entry<String, ValueRange> range : typeRanges.entrySet()) {
+            if (range.getValue().minText != null) {
+                out.name(range.getKey()).value(range.getValue().maxText);
+            }
+        }
+        out.endObject();
+    }
+    
+    /**
+     * Writes quantiles and histograms of the sketched range keys, or nothing if none has values.
+     */
+    private static void writeQuantiles(JsonWriter out, PropertyInfo info, Set<String> keys, 
+                                       SampleStats sample) throws IOException {
+        List<String> sketched = new ArrayList<>();
+        for (String key : keys) {
+            QuantileSketch sketch = info.quantiles != null ? info.quantiles.get(key) : null;
+            if (sketch != null && sketch.getCount() > 0) {
+                sketched.add(key);
+            }
+        }
+        if (sketched.isEmpty()) {
+            return;
+        }
+        out.name("quantiles").beginObject();
+        for (String key : sketched) {
+            QuantileSketch sketch = info.quantiles.get(key);
+            boolean temporal = key.equals("datetime");
+            out.name(key).beginObject();
+            for (double q : REPORTED_QUANTILES) {
+                out.name("p" + Math.round(q * 100)).value(formatSketchValue(sketch.getQuantile(q), temporal));
+            }
+            out.endObject();
+        }
+        out.endObject();
+        out.name("histograms").beginObject();
+        for (String key : sketched) {
+            QuantileSketch sketch = info.quantiles.get(key);
+            boolean temporal = key.equals("datetime");
+            double[] bounds = sketch.getBucketBounds(HISTOGRAM_BUCKETS);
+            long[] counts = sketch.getBucketCounts(bounds);
+            out.name(key).beginArray();
+            for (int i = 0; i < counts.length; i++) {
+                out.beginObject();
+                out.name("lower").value(formatSketchValue(bounds[i], temporal));
+                out.name("upper").value(formatSketchValue(bounds[i + 1], temporal));
+                out.name("count").value(sample != null ? sample.scale(counts[i]) : counts[i]);
+                out.endObject();
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+    
+    private static void printRunStatistics(Map<String, PropertyInfo> propertyMap) {
+        long lookups = 0;
+        long hits = 0;
+        int cachedProperties = 0;
+        for (PropertyInfo info : propertyMap.values()) {
+            if (info.inferenceCache != null) {
+                lookups += info.inferenceCache.lookups;
+                hits += info.inferenceCache.hits;
+                cachedProperties++;
+            }
+        }
+        System.out.println("Properties: " + propertyMap.size());
+        System.out.println(String.format(Locale.ROOT, 
+            "Type inference cache: %d of %d string values (%.1f%%) classified from cache across %d properties",
+            hits, lookups, lookups > 0 ? 100.0 * hits / lookups : 0.0, cachedProperties));
+    }
+    
+    // Distinct value sets up to this size are sorted in memory, larger ones in sorted runs on disk
+    private static final int DISTINCT_SORT_RUN = 1 << 18;
+    
+    /**
+     * Distinct values written as a sorted JSON array. Sets of up to runSize values are
+     * sorted in memory; larger sets are cut into sorted runs of runSize values in temporary
+     * files, which are then k-way merged straight into the writer. The set itself stays in
+     * memory while the runs are cut, so this avoids the sorted copy of the whole set, not
+     * the set.
+     */
+    private static class SortedDistinctValues {
+        private final Set<String> values;
+        private final int runSize;
+        
+        SortedDistinctValues(Set<String> values, int runSize) {
+            this.values = values;
+            this.runSize = runSize;
+        }
+        
+        void writeTo(JsonWriter out) throws IOException {
+            out.beginArray();
+            if (values.size() <= runSize) {
+                List<String> sortedValues = new ArrayList<>(values);
+                Collections.sort(sortedValues);
+                for (String value : sortedValues) {
+                    out.value(value);
+                }
+            } else {
+                mergeRuns(writeRuns(), out);
+            }
+            out.endArray();
+        }
+        
+        private List<File> writeRuns() throws IOException {
+            List<File> runs = new ArrayList<>();
+            boolean written = false;
+            try {
+                List<String> run = new ArrayList<>(runSize);
+                Iterator<String> iterator = values.iterator();
+                while (iterator.hasNext()) {
+                    run.add(iterator.next());
+                    if (run.size() == runSize || !iterator.hasNext()) {
+                        Collections.sort(run);
+                        File file = File.createTempFile("apidumper-sort", ".run");
+                        file.deleteOnExit();
+                        runs.add(file);
+                        try (DataOutputStream runOut = new DataOutputStream(new java.io.BufferedOutputStream(
+                                new java.io.FileOutputStream(file), 65536))) {
+                            runOut.writeInt(run.size());
+                            for (String value : run) {
+                                Checkpoint.writeString(runOut, value);
+                            }
+                        }
+                        run.clear();
+                    }
+                }
+                written = true;
+                return runs;
+            } finally {
+                if (!written) {
+                    // mergeRuns deletes the runs once they are merged; a failed write leaves them to us
+                    for (File file : runs) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+        
+        private static void mergeRuns(List<File> runs, JsonWriter out) throws IOException {
+            PriorityQueue<RunReader> heads = new PriorityQueue<>(runs.size(), 
+                (a, b) -> a.current.compareTo(b.current));
+            try {
+                for (File file : runs) {
+                    RunReader reader = new RunReader(file);
+                    if (reader.advance()) {
+                        heads.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+                // Runs hold disjoint values, so the merge needs no duplicate check
+                while (!heads.isEmpty()) {
+                    RunReader reader = heads.poll();
+                    out.value(reader.current);
+                    if (reader.advance()) {
+                        heads.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+            } finally {
+                for (RunReader reader : heads) {
+                    reader.close();
+                }
+                for (File file : runs) {
+                    file.delete();
+                }
+            }
+        }
+        
+        private static class RunReader {
+            private final DataInputStream in;
+            private int remaining;
+            String current;
+            
+            RunReader(File file) throws IOException {
+                in = new DataInputStream(new java.io.BufferedInputStream(new FileInputStream(file), 65536));
+                remaining = in.readInt();
+            }
+            
+            boolean advance() throws IOException {
+                if (remaining == 0) {
+                    return false;
+                }
+                remaining--;
+                current = Checkpoint.readString(in);
+                return true;
+            }
+            
+            void close() throws IOException {
+                in.close();
+            }
+        }
+    }
+    
+    /**
+     * Writes a report to a writer; the body of a report file or of the console output.
+     */
+    private interface ReportContent {
+        void writeTo(Writer writer) throws IOException;
+    }
+    
+    /**
+     * Streams the report of a property map to the report file or the console.
+     */
+    private static void outputSchemaReport(Map<String, PropertyInfo> propertyMap, AnalysisOptions options, 
+                                           String reportFile) {
+        if (options.stats) {
+            printRunStatistics(propertyMap);
+        }
+        outputSchemaReport(writer -> writeSchemaReport(propertyMap, options, writer), reportFile);
+    }
+    
+    private static void outputSchemaReport(ReportContent content, String reportFile) {
+        if (reportFile != null && !reportFile.trim().isEmpty()) {
+            // Write to file
+            try (Writer writer = new java.io.BufferedWriter(new FileWriter(reportFile), 65536)) {
+                content.writeTo(writer);
+                writer.write(System.lineSeparator());
+            } catch (IOException e) {
+                System.err.println("Error writing schema report to file: " + e.getMessage());
+                // Fall back to console output
+                System.out.println();
+                System.out.println("Schema Report:");
+                writeReportToConsole(content);
+                return;
+            }
+            System.out.println("Schema report written to: " + reportFile);
+        } else {
+            // Output to console
+            System.out.println();
+            System.out.println("Schema Report:");
+            writeReportToConsole(content);
+        }
+    }
+    
+    private static void writeReportToConsole(ReportContent content) {
+        try (Writer writer = new ConsoleWriter()) {
+            content.writeTo(writer);
+            writer.write(System.lineSeparator());
+        } catch (IOException e) {
+            System.err.println("Error writing schema report: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Buffers text for System.out and prints it a full buffer at a time, so it is
+     * encoded like the rest of the output without a String per chunk. Closing flushes
+     * but leaves System.out open.
+     */
+    private static class ConsoleWriter extends Writer {
+        private final char[] buffer = new char[65536];
+        private int length;
+        
+        @Override
+        public void write(char[] chars, int offset, int count) {
+            while (count > 0) {
+                int n = Math.min(count, buffer.length - length);
+                System.arraycopy(chars, offset, buffer, length, n);
+                advance(n);
+                offset += n;
+                count -= n;
+            }
+        }
+        
+        @Override
+        public void write(String str, int offset, int count) {
+            while (count > 0) {
+                int n = Math.min(count, buffer.length - length);
+                str.getChars(offset, offset + n, buffer, length);
+                advance(n);
+                offset += n;
+                count -= n;
+            }
+        }
+        
+        @Override
+        public void write(int c) {
+            buffer[length] = (char) c;
+            advance(1);
+        }
+        
+        private void advance(int n) {
+            length += n;
+            if (length == buffer.length) {
+                System.out.print(buffer);
+                length = 0;
+            }
+        }
+        
+        @Override
+        public void flush() {
+            if (length > 0) {
+                // Only the tail of a report is printed from a partial buffer
+                System.out.print(java.util.Arrays.copyOf(buffer, length));
+                length = 0;
+            }
+            System.out.flush();
+        }
+        
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+    
+    /**
+     * Records the properties below element, which is found at the path of node. If result
+     * is not null it receives the element's fingerprint, computed from the fingerprints of
+     * its children.
+     */
+    private static void analyzeJsonElement(JsonElement element, PathNode node, Map<String, PropertyInfo> propertyMap, 
+                                           AnalysisOptions options, Fingerprint result) {
+        if (element.isJsonObject()) {
+            JsonObject obj = element.getAsJsonObject();
+            Fingerprint member = new Fingerprint();
+            if (result != null) {
+                result.reset();
+            }
+            for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
+                String key = entry.getKey();
+                JsonElement value = entry.getValue();
+                PathNode child = node.child(key);
+                if (child.getFilterAction(options) == PathFilter.SKIP) {
+                    continue;
+                }
+                
+                boolean composite = value.isJsonObject() || value.isJsonArray();
+                recordProperty(child, value, propertyMap, options, composite || result != null ? member : null);
+                if (result != null) {
+                    result.appendMember(key, member);
+                }
+            }
+            if (result != null) {
+                result.finishObject();
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            Fingerprint item = result != null ? new Fingerprint() : null;
+            if (result != null) {
+                result.reset();
+            }
+            for (JsonElement value : array) {
+                analyzeJsonElement(value, node, propertyMap, options, item);
+                if (result != null) {
+                    result.appendElement(item);
+                }
+            }
+            if (result != null) {
+                result.finishArray();
+            }
+        } else if (result != null) {
+            result.setPrimitive(element.isJsonPrimitive() ? element.getAsJsonPrimitive() : null);
+        }
+    }
+    
+    /**
+     * Records one property value and the properties below it. Object and array values are
+     * tracked as distinct values by fingerprint, or by their serialized form when their
+     * distinct values are dumped. The value's fingerprint is left in fingerprint if it is not null.
+     */
+    private static void recordProperty(PathNode node, JsonElement value, Map<String, PropertyInfo> propertyMap, 
+                                       AnalysisOptions options, Fingerprint fingerprint) {
+        if (node.getFilterAction(options) == PathFilter.TRAVERSE) {
+            // Only on the way to included paths: nothing here is recorded or hashed
+            analyzeJsonElement(value, node, propertyMap, options, null);
+            return;
+        }
+        JsonPrimitive primitive = value.isJsonPrimitive() ? value.getAsJsonPrimitive() : null;
+        PropertyInfo info = recordPropertyType(node, getJsonType(value), primitive, propertyMap, options);
+        analyzeJsonElement(value, node, propertyMap, options, fingerprint);
+        
+        // Track distinct values
+        if ((value.isJsonObject() || value.isJsonArray()) && !node.isListed(options)) {
+            info.addDistinctValue(fingerprint.toKey());
+        } else {
+            info.addDistinctValue(getValueAsString(value));
+        }
+    }
+    
+    /**
+     * Records everything about a property value except its distinct value, which
+     * callers add themselves. The primitive is null for null, object and array values.
+     */
+    private static PropertyInfo recordPropertyType(PathNode node, String dataType, JsonPrimitive primitive, 
+                                                   Map<String, PropertyInfo> propertyMap, AnalysisOptions options) {
+        PropertyInfo info = node.info;
+        if (info == null) {
+            // The property may already have been merged into the map from another analyzer
+            info = propertyMap.get(node.path);
+            if (info == null) {
+                info = new PropertyInfo();
+                // Listed distinct values need the exact set
+                if (!node.isListed(options)) {
+                    info.distinctPrecision = options.distinctPrecision;
+                }
+                if (options.topValues > 0) {
+                    info.topValues = new SpaceSaving(options.topValues);
+                }
+                if (options.quantiles) {
+                    info.quantiles = new HashMap<>();
+                }
+                info.offHeap = options.offHeap;
+                propertyMap.put(node.path, info);
+            }
+            node.info = info;
+        }
+        
+        info.count++;
+        if (info.topValues != null && primitive != null) {
+            info.topValues.add(primitive.getAsString(), 1, 0);
+        }
+        
+        if (!info.typeExamples.containsKey(dataType)) {
+            info.typeExamples.put(dataType, getExampleValue(dataType, primitive));
+        }
+        
+        // Track data type counts
+        info.typeCounts.put(dataType, info.typeCounts.getOrDefault(dataType, 0L) + 1);
+        
+        // Handle string values with inferred types
+        if (dataType.equals("string") && primitive != null) {
+            String strValue = primitive.getAsString();
+            if (info.inferenceCache == null) {
+                info.inferenceCache = new InferenceCache();
+            }
+            String inferredType = info.inferenceCache.infer(strValue);
+            
+            // Track all unique inferred types for this property
+            if (!info.inferredTypesSet.containsKey(dataType)) {
+                info.inferredTypesSet.put(dataType, new LinkedHashSet<>());
+            }
+            info.inferredTypesSet.get(dataType).add(inferredType);
+            
+            // Track inferred type counts
+            if (!info.inferredTypeCounts.containsKey(dataType)) {
+                info.inferredTypeCounts.put(dataType, new LinkedHashMap<>());
+            }
+            Map<String, Long> inferredCounts = info.inferredTypeCounts.get(dataType);
+            inferredCounts.put(inferredType, inferredCounts.getOrDefault(inferredType, 0L) + 1);
+            
+            updateRange(info, dataType, inferredType, strValue);
+        }
+        // Handle numeric types directly
+        else if (dataType.equals("number") && primitive != null) {
+            updateRange(info, dataType, "number", primitive.getAsString());
+        }
+        // Handle boolean types
+        else if (dataType.equals("boolean") && primitive != null) {
+            updateRange(info, dataType, "boolean", primitive.getAsString());
+        }
+        
+        return info;
+    }
+    
+    /**
+     * Node of a property path trie. Analysis walks the trie by key instead of building a
+     * dotted path string for every field it visits: each node builds its path once, and
+     * keeps a handle to its property's PropertyInfo once the property has been recorded.
+     * A trie belongs to one property map and is not thread-safe.
+     */
+    private static class PathNode {
+        final String path;
+        // Handle to the property at this path, set when it is first recorded
+        PropertyInfo info;
+        private final PathNode parent;
+        private final String key;
+        private Map<String, PathNode> children;
+        private Boolean listed;
+        // Path filter decision and automaton states, computed on first use
+        private byte filterAction = -1;
+        private BitSet includeState;
+        private BitSet excludeState;
+        
+        PathNode(String path) {
+            this(path, null, null);
+        }
+        
+        private PathNode(String path, PathNode parent, String key) {
+            this.path = path;
+            this.parent = parent;
+            this.key = key;
+        }
+        
+        PathNode child(String key) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            PathNode child = children.get(key);
+            if (child == null) {
+                child = new PathNode(path.isEmpty() ? key : path + "." + key, this, key);
+                children.put(key, child);
+            }
+            return child;
+        }
+        
+        /**
+         * What to do with values at this path: PathFilter.RECORD without a filter.
+         */
+        byte getFilterAction(AnalysisOptions options) {
+            PathFilter filter = options.pathFilter;
+            if (filter == null) {
+                return PathFilter.RECORD;
+            }
+            if (filterAction < 0) {
+                if (parent != null) {
+                    parent.getFilterAction(options);
+                    filterAction = filter.step(parent.filterAction, parent.includeState, parent.excludeState, key, this);
+                } else {
+                    // A trie rooted below the document root starts from the states of its path
+                    filterAction = filter.start(this);
+                    if (!path.isEmpty()) {
+                        for (String segment : path.split("\\.")) {
+                            filterAction = filter.step(filterAction, includeState, excludeState, segment, this);
+                        }
+                    }
+                }
+            }
+            return filterAction;
+        }
+        
+        /**
+         * Whether the distinct values of this property are listed in the report.
+         */
+        boolean isListed(AnalysisOptions options) {
+            if (listed == null) {
+                listed = options.distinctValueProps.contains(path);
+            }
+            return listed;
+        }
+    }
+    
+    /**
+     * Include and exclude globs over dotted property paths, each list compiled into a
+     * nondeterministic automaton over path segments. A glob segment may contain * (any
+     * characters) and ?; a ** segment matches any number of segments. Array elements
+     * share their array's path, as in the report. Each PathNode steps the automata once
+     * with its key and caches the resulting states and action, so the per-value cost is
+     * a field read. Paths matching an exclude glob are skipped with their subtrees.
+     * Without include globs everything else is recorded; with them, paths matching an
+     * include glob are recorded with their subtrees, ancestors of possible matches are
+     * walked without being recorded, and everything else is skipped.
+     */
+    private static class PathFilter {
+        static final byte SKIP = 0;
+        static final byte TRAVERSE = 1;
+        static final byte RECORD = 2;
+        
+        private final SegmentAutomaton include;
+        private final SegmentAutomaton exclude;
+        private final String description;
+        
+        PathFilter(String includeGlobs, String excludeGlobs) {
+            include = SegmentAutomaton.compile(includeGlobs);
+            exclude = SegmentAutomaton.compile(excludeGlobs);
+            description = "include=" + (includeGlobs == null ? "" : includeGlobs.trim()) 
+                          + ";exclude=" + (excludeGlobs == null ? "" : excludeGlobs.trim());
+        }
+        
+        /**
+         * Sets the automaton states of the document root on node and returns its action.
+         */
+        byte start(PathNode node) {
+            node.includeState = include != null ? include.start() : null;
+            node.excludeState = exclude != null ? exclude.start() : null;
+            return include != null ? TRAVERSE : RECORD;
+        }
+        
+        /**
+         * Steps from the parent's action and states by one path segment, sets the states on node
+         * and returns its action.
+         */
+        byte step(byte parentAction, BitSet parentInclude, BitSet parentExclude, String segment, PathNode node) {
+            if (parentAction == SKIP) {
+                return SKIP;
+            }
+            if (exclude != null) {
+                node.excludeState = exclude.step(parentExclude, segment);
+                if (exclude.accepts(node.excludeState)) {
+                    return SKIP;
+                }
+            }
+            if (parentAction == RECORD) {
+                return RECORD;
+            }
+            node.includeState = include.step(parentInclude, segment);
+            if (include.accepts(node.includeState)) {
+                return RECORD;
+            }
+            return node.includeState.isEmpty() ? SKIP : TRAVERSE;
+        }
+        
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+    
+    /**
+     * Automaton over path segments for a list of globs. Every position in every glob is
+     * a state bit; the bit after a glob's last segment is accepting.
+     */
+    private static class SegmentAutomaton {
+        private final String[] segments;
+        // Whether the state bit is the accepting position after a glob's last segment
+        private final boolean[] accepting;
+        
+        private SegmentAutomaton(List<String[]> globs) {
+            List<String> allSegments = new ArrayList<>();
+            List<Boolean> allAccepting = new ArrayList<>();
+            for (String[] glob : globs) {
+                for (String segment : glob) {
+                    allSegments.add(segment);
+                    allAccepting.add(false);
+                }
+                allSegments.add(null);
+                allAccepting.add(true);
+            }
+            segments = allSegments.toArray(new String[0]);
+            accepting = new boolean[allAccepting.size()];
+            for (int i = 0; i < accepting.length; i++) {
+                accepting[i] = allAccepting.get(i);
+            }
+        }
+        
+        /**
+         * Compiles comma-separated globs, or returns null if there are none.
+         */
+        static SegmentAutomaton compile(String globs) {
+            if (globs == null || globs.trim().isEmpty()) {
+                return null;
+            }
+            List<String[]> parsed = new ArrayList<>();
+            for (String glob : globs.split(",")) {
+                if (!glob.trim().isEmpty()) {
+                    parsed.add(glob.trim().split("\\."));
+                }
+            }
+            return parsed.isEmpty() ? null : new SegmentAutomaton(parsed);
+        }
+        
+        BitSet start() {
+            BitSet state = new BitSet(segments.length);
+            for (int i = 0; i < segments.length; i++) {
+                if (i == 0 || accepting[i - 1]) {
+                    addWithClosure(state, i);
+                }
+            }
+            return state;
+        }
+        
+        BitSet step(BitSet state, String segment) {
+            BitSet next = new BitSet(segments.length);
+            for (int i = state.nextSetBit(0); i >= 0; i = state.nextSetBit(i + 1)) {
+                if (accepting[i]) {
+                    continue;
+                }
+                if (segments[i].equals("**")) {
+                    addWithClosure(next, i);
+                } else if (matchesSegment(segments[i], segment)) {
+                    addWithClosure(next, i + 1);
+                }
+            }
+            return next;
+        }
+        
+        boolean accepts(BitSet state) {
+            for (int i = state.nextSetBit(0); i >= 0; i = state.nextSetBit(i + 1)) {
+                if (accepting[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * Adds a position and, since ** may match no segment at all, the positions after it.
+         */
+        private void addWithClosure(BitSet state, int position) {
+            state.set(position);
+            while (!accepting[position] && segments[position].equals("**")) {
+                state.set(++position);
+            }
+        }
+        
+        /**
+         * Matches a key against a glob segment with * and ? wildcards, backtracking to the last *.
+         */
+        private static boolean matchesSegment(String glob, String key) {
+            int g = 0;
+            int k = 0;
+            int star = -1;
+            int starKey = 0;
+            while (k < key.length()) {
+                if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == key.charAt(k))) {
+                    g++;
+                    k++;
+                } else if (g < glob.length() && glob.charAt(g) == '*') {
+                    star = g++;
+                    starKey = k;
+                } else if (star >= 0) {
+                    g = star + 1;
+                    k = ++starKey;
+                } else {
+                    return false;
+                }
+            }
+            while (g < glob.length() && glob.charAt(g) == '*') {
+                g++;
+            }
+            return g == glob.length();
+        }
+    }
+    
+    /**
+     * Walks a JsonReader token stream and records properties exactly as
+     * analyzeJsonElement does for a parsed tree, without building the tree.
+     * Object and array values are identified for distinct counting by their
+     * structural fingerprint, built bottom-up while the value is read.
+     * Properties whose distinct values are dumped keep the full serialized form.
+     */
+    private static class StreamingAnalyzer {
+        private JsonReader reader;
+        private final Map<String, PropertyInfo> propertyMap;
+        private final AnalysisOptions options;
+        private final PathNode root = new PathNode("");
+        // One writer per open object/array value of a property whose distinct values are dumped
+        private final List<JsonWriter> captures = new ArrayList<>();
+        // Reusable fingerprint per nesting level, so fingerprinting does not allocate per value
+        private final List<Fingerprint> fingerprints = new ArrayList<>();
+        private int depth = 0;
+        // Optional callback for the primitive values of one property path
+        private String watchPath;
+        private java.util.function.Consumer<String> watcher;
+        private long arrayElementCount = 0;
+        // Pool for the elements of top-level arrays, or null to analyze everything on the calling thread
+        private ForkJoinPool pool;
+        // Occurrences per element of the array being sampled, or null outside a sample
+        private SampleTally sampleTally;
+        
+        StreamingAnalyzer(JsonReader reader, Map<String, PropertyInfo> propertyMap, AnalysisOptions options) {
+            this.reader = reader;
+            this.propertyMap = propertyMap;
+            this.options = options;
+        }
+        
+        /**
+         * Analyzes the elements of top-level arrays, the document itself or a member of the
+         * root object, in batches on the given pool. Batch elements are parsed into trees, so
+         * arrays are read token by token instead when sampling or filtering paths; with
+         * --topValues or --quantiles too, as merged summaries would depend on the batch
+         * boundaries. Counts,
+         * examples, min/max values, inferred types and exact or HLL distinct counts then match
+         * sequential analysis exactly.
+         */
+        void analyzeArraysOn(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+        
+        /**
+         * Calls the watcher with the string form of every non-null primitive
+         * recorded at the given path, as soon as it is read.
+         */
+        void watch(String path, java.util.function.Consumer<String> watcher) {
+            this.watchPath = path;
+            this.watcher = watcher;
+        }
+        
+        /**
+         * Analyzes the next document from the given reader into the same property map.
+         */
+        void analyzeDocument(JsonReader documentReader) throws IOException {
+            this.reader = documentReader;
+            analyzeValue(root, null);
+        }
+        
+        long getArrayElementCount() {
+            return arrayElementCount;
+        }
+        
+        /**
+         * Analyzes the next value. If result is not null it receives the value's fingerprint.
+         */
+        void analyzeValue(PathNode node, Fingerprint result) throws IOException {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT: {
+                    reader.beginObject();
+                    for (JsonWriter capture : captures) {
+                        capture.beginObject();
+                    }
+                    Fingerprint member = enterComposite(result);
+                    while (reader.hasNext()) {
+                        String key = reader.nextName();
+                        PathNode child = node.child(key);
+                        if (child.getFilterAction(options) == PathFilter.SKIP) {
+                            // Excluded subtrees are neither materialized, recorded nor hashed
+                            reader.skipValue();
+                            continue;
+                        }
+                        for (JsonWriter capture : captures) {
+                            capture.name(key);
+                        }
+                        analyzeProperty(child, member, result != null);
+                        if (result != null) {
+                            result.appendMember(key, member);
+                        }
+                    }
+                    depth--;
+                    reader.endObject();
+                    for (JsonWriter capture : captures) {
+                        capture.endObject();
+                    }
+                    if (result != null) {
+                        result.finishObject();
+                    }
+                    break;
+                }
+                case BEGIN_ARRAY: {
+                    // Arrays inside sampled elements are read in full
+                    if (options.isSampling() && sampleTally == null && depth <= 1 && captures.isEmpty()) {
+                        analyzeArraySample(node, result);
+                        break;
+                    }
+                    // Batches are parsed into trees, which a path filter is meant to avoid, and
+                    // merged top values and quantiles would depend on the batch boundaries
+                    if (pool != null && sampleTally == null && depth <= 1 && captures.isEmpty() 
+                        && options.pathFilter == null && options.topValues == 0 && !options.quantiles) {
+                        analyzeArrayInBatches(node, result);
+                        break;
+                    }
+                    reader.beginArray();
+                    for (JsonWriter capture : captures) {
+                        capture.beginArray();
+                    }
+                    Fingerprint element = enterComposite(result);
+                    while (reader.hasNext()) {
+                        arrayElementCount++;
+                        analyzeValue(node, result != null ? element : null);
+                        if (result != null) {
+                            result.appendElement(element);
+                        }
+                    }
+                    depth--;
+                    reader.endArray();
+                    for (JsonWriter capture : captures) {
+                        capture.endArray();
+                    }
+                    if (result != null) {
+                        result.finishArray();
+                    }
+                    break;
+                }
+                default:
+                    JsonPrimitive primitive = readPrimitive();
+                    if (result != null) {
+                        result.setPrimitive(primitive);
+                    }
+                    break;
+            }
+        }
+        
+        /**
+         * Reads the elements of an array in batches and analyzes each batch into its own
+         * property map on the pool, while the next batch is being parsed. Batch maps are
+         * merged in element order, which reproduces the property order, counts, examples and
+         * fingerprint of sequential analysis exactly. At most two batches per worker are
+         * held in memory at a time.
+         */
+        private void analyzeArrayInBatches(PathNode node, Fingerprint result) throws IOException {
+            reader.beginArray();
+            if (result != null) {
+                result.reset();
+            }
+            boolean fingerprint = result != null;
+            Deque<Future<ArrayBatch>> inFlight = new ArrayDeque<>();
+            boolean more = true;
+            while (more) {
+                List<JsonElement> elements = new ArrayList<>();
+                while (elements.size() < ARRAY_BATCH_SIZE && reader.hasNext()) {
+                    elements.add(JsonParser.parseReader(reader));
+                }
+                more = reader.hasNext();
+                arrayElementCount += elements.size();
+                
+                if (!more && inFlight.isEmpty()) {
+                    // Small arrays are not worth handing off
+                    mergeArrayBatch(analyzeArrayBatch(elements, node.path, options, fingerprint), result);
+                } else {
+                    inFlight.add(pool.submit(() -> analyzeArrayBatch(elements, node.path, options, fingerprint)));
+                }
+                while (!inFlight.isEmpty() && (!more || inFlight.size() > pool.getParallelism() * 2)) {
+                    try {
+                        mergeArrayBatch(inFlight.poll().get(), result);
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof RuntimeException) {
+                            throw (RuntimeException) e.getCause();
+                        }
+                        throw new IOException(e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new java.io.InterruptedIOException("Interrupted while analyzing array elements");
+                    }
+                }
+            }
+            reader.endArray();
+            if (result != null) {
+                result.finishArray();
+            }
+        }
+        
+        /**
+         * Analyzes a random sample of the elements of an array and skips the rest without
+         * materializing them. A fixed sample size uses reservoir sampling (Algorithm R):
+         * the text of the sampled elements is kept until the end of the array and then
+         * analyzed in their original order. A fraction samples each element independently
+         * as it is read. Properties found in the sampled elements get SampleStats for scaling
+         * their counts. The result fingerprint covers the sampled elements only.
+         */
+        private void analyzeArraySample(PathNode node, Fingerprint result) throws IOException {
+            reader.beginArray();
+            Fingerprint element = enterComposite(result);
+            Random random = new Random(SAMPLE_SEED);
+            SampleTally tally = new SampleTally();
+            sampleTally = tally;
+            
+            long total = 0;
+            long sampled = 0;
+            try {
+                List<String> reservoir = new ArrayList<>();
+                long[] positions = new long[options.sampleSize];
+                while (reader.hasNext()) {
+                    long position = total++;
+                    if (options.sampleSize > 0) {
+                        int slot = position < options.sampleSize ? (int) position : (int) (random.nextDouble() * (position + 1));
+                        if (slot >= options.sampleSize) {
+                            reader.skipValue();
+                        } else if (slot == reservoir.size()) {
+                            reservoir.add(JsonParser.parseReader(reader).toString());
+                            positions[slot] = position;
+                        } else {
+                            reservoir.set(slot, JsonParser.parseReader(reader).toString());
+                            positions[slot] = position;
+                        }
+                    } else if (random.nextDouble() < options.sampleFraction) {
+                        analyzeSampledElement(node, result, element);
+                        sampled++;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                
+                if (options.sampleSize > 0) {
+                    Integer[] order = new Integer[reservoir.size()];
+                    for (int i = 0; i < order.length; i++) {
+                        order[i] = i;
+                    }
+                    Arrays.sort(order, (a, b) -> Long.compare(positions[a], positions[b]));
+                    JsonReader arrayReader = reader;
+                    try {
+                        for (int i : order) {
+                            reader = new JsonReader(new java.io.StringReader(reservoir.get(i)));
+                            reader.setLenient(true);
+                            analyzeSampledElement(node, result, element);
+                        }
+                    } finally {
+                        reader = arrayReader;
+                    }
+                    sampled = reservoir.size();
+                }
+            } finally {
+                sampleTally = null;
+            }
+            
+            depth--;
+            reader.endArray();
+            if (result != null) {
+                result.finishArray();
+            }
+            arrayElementCount += total;
+            tally.finish(sampled, total);
+        }
+        
+        private void analyzeSampledElement(PathNode node, Fingerprint result, Fingerprint element) throws IOException {
+            analyzeValue(node, result != null ? element : null);
+            if (result != null) {
+                result.appendElement(element);
+            }
+            sampleTally.endElement();
+        }
+        
+        /**
+         * Records a value of the property at node, and counts it for the sample being analyzed.
+         */
+        private PropertyInfo record(PathNode node, String dataType, JsonPrimitive primitive) {
+            PropertyInfo info = recordPropertyType(node, dataType, primitive, propertyMap, options);
+            if (sampleTally != null) {
+                sampleTally.record(info);
+            }
+            return info;
+        }
+        
+        private void mergeArrayBatch(ArrayBatch batch, Fingerprint result) {
+            mergePropertyMaps(propertyMap, batch.propertyMap);
+            if (result != null) {
+                result.appendRun(batch.fold);
+            }
+        }
+        
+        /**
+         * Starts a fold in result and returns the fingerprint slot for the children one level down.
+         */
+        private Fingerprint enterComposite(Fingerprint result) {
+            if (result != null) {
+                result.reset();
+            }
+            depth++;
+            while (fingerprints.size() <= depth) {
+                fingerprints.add(new Fingerprint());
+            }
+            return fingerprints.get(depth);
+        }
+        
+        /**
+         * Analyzes the value of the property at path. Object and array values always leave their
+         * fingerprint in slot; primitives only when the enclosing value needs it.
+         */
+        private void analyzeProperty(PathNode node, Fingerprint slot, boolean needFingerprint) throws IOException {
+            JsonToken token = reader.peek();
+            if (node.getFilterAction(options) == PathFilter.TRAVERSE) {
+                // Only on the way to included paths: walk composites, skip primitives
+                if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+                    analyzeValue(node, null);
+                } else {
+                    reader.skipValue();
+                }
+                return;
+            }
+            if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+                String dataType = token == JsonToken.BEGIN_OBJECT ? "object" : "array";
+                PropertyInfo info = record(node, dataType, null);
+                
+                if (node.isListed(options)) {
+                    StringWriter text = new StringWriter();
+                    JsonWriter capture = new JsonWriter(text);
+                    capture.setLenient(true);
+                    captures.add(capture);
+                    analyzeValue(node, needFingerprint ? slot : null);
+                    captures.remove(captures.size() - 1);
+                    capture.flush();
+                    info.addDistinctValue(text.toString());
+                } else {
+                    analyzeValue(node, slot);
+                    info.addDistinctValue(slot.toKey());
+                }
+            } else {
+                JsonPrimitive primitive = readPrimitive();
+                if (needFingerprint) {
+                    slot.setPrimitive(primitive);
+                }
+                if (primitive == null) {
+                    record(node, "null", null).addDistinctValue("null");
+                } else {
+                    String dataType = primitive.isBoolean() ? "boolean" : primitive.isNumber() ? "number" : "string";
+                    record(node, dataType, primitive).addDistinctValue(primitive.getAsString());
+                    if (watcher != null && node.path.equals(watchPath)) {
+                        watcher.accept(primitive.getAsString());
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Reads the next primitive value, mirroring it to any open captures.
+         * Returns null for a JSON null.
+         */
+        private JsonPrimitive readPrimitive() throws IOException {
+            JsonPrimitive primitive;
+            switch (reader.peek()) {
+                case STRING:
+                    primitive = new JsonPrimitive(reader.nextString());
+                    for (JsonWriter capture : captures) {
+                        capture.value(primitive.getAsString());
+                    }
+                    return primitive;
+                case NUMBER:
+                    primitive = new JsonPrimitive(new LazilyParsedNumber(reader.nextString()));
+                    for (JsonWriter capture : captures) {
+                        capture.value(primitive.getAsNumber());
+                    }
+                    return primitive;
+                case BOOLEAN:
+                    primitive = new JsonPrimitive(reader.nextBoolean());
+                    for (JsonWriter capture : captures) {
+                        capture.value(primitive.getAsBoolean());
+                    }
+                    return primitive;
+                case NULL:
+                    reader.nextNull();
+                    for (JsonWriter capture : captures) {
+                        capture.nullValue();
+                    }
+                    return null;
+                default:
+                    throw new IllegalStateException("Unexpected JSON token " + reader.peek() + " at " + reader.getPath());
+            }
+        }
+    }
+    
+    // Number of array elements handed to a worker at a time in parallel analysis
+    private static final int ARRAY_BATCH_SIZE = 1024;
+    
+    // Fixed so that sampling the same input twice gives the same report
+    private static final long SAMPLE_SEED = 0x5eed;
+    
+    /**
+     * Counts how often each property occurs in each sampled element of an array. Only
+     * the properties an element touched are visited when it ends.
+     */
+    private static class SampleTally {
+        // {occurrences in the current element, sum, sum of squares} per property
+        private final Map<PropertyInfo, long[]> tallies = new IdentityHashMap<>();
+        // Tallies of the properties seen in the current element
+        private final List<long[]> touched = new ArrayList<>();
+        
+        void record(PropertyInfo info) {
+            long[] tally = tallies.get(info);
+            if (tally == null) {
+                tally = new long[3];
+                tallies.put(info, tally);
+            }
+            if (tally[0]++ == 0) {
+                touched.add(tally);
+            }
+        }
+        
+        void endElement() {
+            for (long[] tally : touched) {
+                tally[1] += tally[0];
+                tally[2] += tally[0] * tally[0];
+                tally[0] = 0;
+            }
+            touched.clear();
+        }
+        
+        /**
+         * Gives every property found in the sampled elements its SampleStats.
+         */
+        void finish(long sampledElements, long totalElements) {
+            for (Map.Entry<PropertyInfo, long[]> tally : tallies.entrySet()) {
+                if (tally.getValue()[1] > 0) {
+                    tally.getKey().sample = new SampleStats(sampledElements, totalElements, 
+                                                            tally.getValue()[1], tally.getValue()[2]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * How a property's occurrences were sampled: sampledElements of the totalElements
+     * elements of an array were analyzed, and the property occurred sum times in them
+     * (sumSquares is the sum of the squared per-element occurrences). Counts are scaled by
+     * totalElements / sampledElements, and the 95% bounds come from the per-element
+     * variance with a finite population correction.
+     */
+    private static class SampleStats {
+        final long sampledElements;
+        final long totalElements;
+        final long sum;
+        final long sumSquares;
+        
+        SampleStats(long sampledElements, long totalElements, long sum, long sumSquares) {
+            this.sampledElements = sampledElements;
+            this.totalElements = totalElements;
+            this.sum = sum;
+            this.sumSquares = sumSquares;
+        }
+        
+        long scale(long sampledCount) {
+            return Math.round((double) sampledCount * totalElements / sampledElements);
+        }
+        
+        long[] getCountBounds() {
+            double n = sampledElements;
+            double mean = sum / n;
+            double variance = n > 1 ? Math.max(0, (sumSquares - n * mean * mean) / (n - 1)) : 0;
+            double correction = totalElements > 1 ? (totalElements - n) / (totalElements - 1) : 0;
+            double margin = 1.96 * totalElements * Math.sqrt(variance / n * correction);
+            double estimate = mean * totalElements;
+            // The count can be no lower than what the sample already contains
+            long lower = Math.max(sum, Math.round(Math.floor(estimate - margin)));
+            long upper = Math.round(Math.ceil(estimate + margin));
+            return new long[] { lower, Math.max(lower, upper) };
+        }
+    }
+    
+    /**
+     * Result of analyzing a run of array elements: their properties and, if requested,
+     * the fold of their fingerprints.
+     */
+    private static class ArrayBatch {
+        Map<String, PropertyInfo> propertyMap = new LinkedHashMap<>();
+        Fingerprint fold = new Fingerprint();
+    }
+    
+    private static ArrayBatch analyzeArrayBatch(List<JsonElement> elements, String path, AnalysisOptions options, 
+                                                boolean fingerprint) {
+        ArrayBatch batch = new ArrayBatch();
+        // Each batch walks its own trie, as tries are not shared between threads
+        PathNode node = new PathNode(path);
+        Fingerprint element = fingerprint ? new Fingerprint() : null;
+        for (JsonElement value : elements) {
+            analyzeJsonElement(value, node, batch.propertyMap, options, element);
+            if (fingerprint) {
+                batch.fold.appendElement(element);
+            }
+        }
+        return batch;
+    }
+    
+    /**
+     * Order-sensitive 128-bit fingerprint of a JSON value, used as its distinct value key.
+     * Fingerprints are built bottom-up: an object or array folds the fingerprints of its
+     * members or elements, so each subtree is hashed once however deeply it is nested,
+     * instead of being serialized again for every ancestor. Two independent 64-bit lanes
+     * keep accidental collisions between distinct values negligible. Children are folded
+     * polynomially (fold = fold * multiplier + child) before the fold is finished.
+     */
+    private static class Fingerprint {
+        private static final long HIGH_MULTIPLIER = 0x9e3779b97f4a7c15L;
+        private static final long LOW_MULTIPLIER = 0xc2b2ae3d27d4eb4fL;
+        private static final long NULL_TAG = 1;
+        private static final long BOOLEAN_TAG = 2;
+        private static final long NUMBER_TAG = 3;
+        private static final long STRING_TAG = 4;
+        private static final long ARRAY_TAG = 5;
+        private static final long OBJECT_TAG = 6;
+        
+        long high;
+        long low;
+        // Number of children folded since the last reset
+        long length;
+        
+        void reset() {
+            high = 0;
+            low = 0;
+            length = 0;
+        }
+        
+        /**
+         * Sets this fingerprint to that of a primitive value; null stands for JSON null.
+         */
+        void setPrimitive(JsonPrimitive primitive) {
+            if (primitive == null) {
+                setLeaf(NULL_TAG, "null");
+            } else {
+                long tag = primitive.isBoolean() ? BOOLEAN_TAG : primitive.isNumber() ? NUMBER_TAG : STRING_TAG;
+                setLeaf(tag, primitive.getAsString());
+            }
+        }
+        
+        private void setLeaf(long tag, String text) {
+            long h = 0xcbf29ce484222325L ^ tag;
+            long l = 0x84222325cbf29ce4L + tag;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                h = (h ^ c) * 0x100000001b3L;
+                l = (l + c) * LOW_MULTIPLIER;
+            }
+            high = mix(h ^ text.length());
+            low = mix(l + text.length());
+            length = 0;
+        }
+        
+        void appendElement(Fingerprint element) {
+            append(element.high, element.low);
+        }
+        
+        void appendMember(String key, Fingerprint value) {
+            long keyHigh = 0xcbf29ce484222325L;
+            long keyLow = 0x84222325cbf29ce4L;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                keyHigh = (keyHigh ^ c) * 0x100000001b3L;
+                keyLow = (keyLow + c) * LOW_MULTIPLIER;
+            }
+            append(mix(keyHigh + key.length()) ^ value.high * HIGH_MULTIPLIER, 
+                   mix(keyLow ^ key.length()) + value.low * LOW_MULTIPLIER);
+        }
+        
+        private void append(long childHigh, long childLow) {
+            high = high * HIGH_MULTIPLIER + childHigh;
+            low = low * LOW_MULTIPLIER + childLow;
+            length++;
+        }
+        
+        /**
+         * Appends the unfinished fold of a run of children, with the same result as
+         * appending those children one by one.
+         */
+        void appendRun(Fingerprint run) {
+            high = high * power(HIGH_MULTIPLIER, run.length) + run.high;
+            low = low * power(LOW_MULTIPLIER, run.length) + run.low;
+            length += run.length;
+        }
+        
+        private static long power(long base, long exponent) {
+            long result = 1;
+            while (exponent > 0) {
+                if ((exponent & 1) != 0) {
+                    result *= base;
+                }
+                base *= base;
+                exponent >>= 1;
+            }
+            return result;
+        }
+        
+        void finishArray() {
+            finish(ARRAY_TAG);
+        }
+        
+        void finishObject() {
+            finish(OBJECT_TAG);
+        }
+        
+        private void finish(long tag) {
+            high = mix(high ^ (tag << 56) ^ length);
+            low = mix(low + tag + length * LOW_MULTIPLIER);
+        }
+        
+        /**
+         * Distinct value key for this fingerprint: '#' followed by 32 hex digits.
+         */
+        String toKey() {
+            char[] key = new char[33];
+            key[0] = '#';
+            for (int i = 0; i < 16; i++) {
+                key[1 + i] = Character.forDigit((int) (high >>> (60 - 4 * i)) & 0xf, 16);
+                key[17 + i] = Character.forDigit((int) (low >>> (60 - 4 * i)) & 0xf, 16);
+            }
+            return new String(key);
+        }
+        
+        /**
+         * MurmurHash3 64-bit finalizer.
+         */
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            value *= 0xc4ceb9fe1a85ec53L;
+            value ^= value >>> 33;
+            return value;
+        }
+    }
+    
+    /**
+     * Reader that remembers the first characters read through it, so parse errors
+     * can show a preview of the input without buffering all of it.
+     */
+    private static class PreviewReader extends java.io.FilterReader {
+        private final StringBuilder preview = new StringBuilder();
+        private final int limit;
+        private boolean truncated = false;
+        
+        PreviewReader(Reader in, int limit) {
+            super(in);
+            this.limit = limit;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c != -1) {
+                remember(new char[] { (char) c }, 0, 1);
+            }
+            return c;
+        }
+        
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int read = super.read(cbuf, off, len);
+            if (read > 0) {
+                remember(cbuf, off, read);
+            }
+            return read;
+        }
+        
+        private void remember(char[] cbuf, int off, int len) {
+            int room = limit - preview.length();
+            if (room > 0) {
+                preview.append(cbuf, off, Math.min(room, len));
+            }
+            if (len > room) {
+                truncated = true;
+            }
+        }
+        
+        String getPreview() {
+            return truncated ? preview.toString() + "..." : preview.toString();
+        }
+    }
+    
+    private static String getJsonType(JsonElement element) {
+        if (element.isJsonNull()) {
+            return "null";
+        } else if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                return "boolean";
+            } else if (primitive.isNumber()) {
+                return "number";
+            } else if (primitive.isString()) {
+                return "string";
+            }
+        } else if (element.isJsonArray()) {
+            return "array";
+        } else if (element.isJsonObject()) {
+            return "object";
+        }
+        return "unknown";
+    }
+    
+    private static Object getExampleValue(String dataType, JsonPrimitive primitive) {
+        if (primitive != null) {
+            if (primitive.isBoolean()) {
+                return primitive.getAsBoolean();
+            } else if (primitive.isNumber()) {
+                return primitive.getAsNumber();
+            } else if (primitive.isString()) {
+                return primitive.getAsString();
+            }
+        } else if (dataType.equals("array")) {
+            return "[array]";
+        } else if (dataType.equals("object")) {
+            return "{object}";
+        }
+        return null;
+    }
+    
+    /**
+     * Adds a value to the min/max range kept under key for the given data type.
+     */
+    private static void updateRange(PropertyInfo info, String dataType, String key, String value) {
+        Map<String, ValueRange> typeRanges = info.ranges.get(dataType);
+        if (typeRanges == null) {
+            typeRanges = new LinkedHashMap<>();
+            info.ranges.put(dataType, typeRanges);
+        }
+        ValueRange range = typeRanges.get(key);
+        if (range == null) {
+            range = createValueRange(key);
+            typeRanges.put(key, range);
+        }
+        range.add(value);
+        
+        if (info.quantiles != null && isSketchedType(key)) {
+            double position = key.equals("datetime") ? ((TemporalRange) range).lastEpochSeconds() : Double.parseDouble(value);
+            QuantileSketch sketch = info.quantiles.get(key);
+            if (sketch == null) {
+                sketch = new QuantileSketch();
+                info.quantiles.put(key, sketch);
+            }
+            sketch.add(position);
+        }
+    }
+    
+    private static boolean isSketchedType(String key) {
+        return key.equals("number") || key.equals("integer") || key.equals("float") || key.equals("datetime");
+    }
+    
+    /**
+     * Formats a sketch value: datetimes as UTC instants, whole numbers without a fraction.
+     */
+    private static String formatSketchValue(double value, boolean temporal) {
+        if (temporal) {
+            long seconds = (long) Math.floor(value);
+            return Instant.ofEpochSecond(seconds, Math.round((value - seconds) * 1000) * 1000000).toString();
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+    
+    private static ValueRange createValueRange(String type) {
+        switch (type) {
+            case "number":
+            case "integer":
+            case "float":
+                return new NumberRange();
+            case "date":
+            case "datetime":
+            case "time":
+                return new TemporalRange(type);
+            case "boolean":
+                return new BooleanRange();
+            default:
+                // guid and string compare lexicographically
+                return new TextRange();
+        }
+    }
+    
+    /**
+     * Running minimum and maximum of the values of one type seen for a property.
+     * Each kind of range compares values through a typed key kept next to the
+     * original text, so the current extremes are never parsed again and the report
+     * shows values exactly as they appeared. Ties keep the value seen first.
+     */
+    private abstract static class ValueRange {
+        // Null until the first value is added
+        String minText;
+        String maxText;
+        
+        abstract void add(String value);
+        
+        /**
+         * Folds in the extremes of another range of the same type.
+         */
+        void merge(ValueRange other) {
+            if (other.minText != null) {
+                add(other.minText);
+                add(other.maxText);
+            }
+        }
+    }
+    
+    /**
+     * Lexicographic range, used for guid and plain string values.
+     */
+    private static class TextRange extends ValueRange {
+        @Override
+        void add(String value) {
+            if (minText == null) {
+                minText = value;
+                maxText = value;
+            } else {
+                if (value.compareTo(minText) < 0) {
+                    minText = value;
+                }
+                if (value.compareTo(maxText) > 0) {
+                    maxText = value;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Boolean range: the latest false-like value becomes the min and the latest
+     * true-like value the max.
+     */
+    private static class BooleanRange extends ValueRange {
+        @Override
+        void add(String value) {
+            if (minText == null) {
+                minText = value;
+                maxText = value;
+            } else {
+                if (value.equalsIgnoreCase("false")) {
+                    minText = value;
+                }
+                if (value.equalsIgnoreCase("true")) {
+                    maxText = value;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Numeric range for JSON numbers and integer/float strings. Integers of up to
+     * 18 digits compare exactly as longs, other values as doubles. When two doubles
+     * tie, the values are compared exactly as BigDecimals, so integers beyond the
+     * precision of a double (such as large IDs) are still ordered correctly.
+     */
+    private static class NumberRange extends ValueRange {
+        private boolean minIsLong;
+        private boolean maxIsLong;
+        private long minLong;
+        private long maxLong;
+        private double minDouble;
+        private double maxDouble;
+        
+        @Override
+        void add(String value) {
+            boolean isLong = isShortInteger(value);
+            long longValue = 0;
+            double doubleValue;
+            if (isLong) {
+                longValue = Long.parseLong(value);
+                doubleValue = longValue;
+            } else {
+                try {
+                    doubleValue = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    // Skip if parsing fails
+                    return;
+                }
+                if (Double.isNaN(doubleValue)) {
+                    return;
+                }
+            }
+            
+            boolean first = minText == null;
+            if (first || compare(value, isLong, longValue, doubleValue, minText, minIsLong, minLong, minDouble) < 0) {
+                minText = value;
+                minIsLong = isLong;
+                minLong = longValue;
+                minDouble = doubleValue;
+            }
+            if (first || compare(value, isLong, longValue, doubleValue, maxText, maxIsLong, maxLong, maxDouble) > 0) {
+                maxText = value;
+                maxIsLong = isLong;
+                maxLong = longValue;
+                maxDouble = doubleValue;
+            }
+        }
+        
+        private static int compare(String text, boolean isLong, long longValue, double doubleValue, 
+                                   String otherText, boolean otherIsLong, long otherLong, double otherDouble) {
+            if (isLong && otherIsLong) {
+                return Long.compare(longValue, otherLong);
+            }
+            if (doubleValue < otherDouble) {
+                return -1;
+            }
+            if (doubleValue > otherDouble) {
+                return 1;
+            }
+            // Equal doubles only prove equal values for short finite decimals
+            if (text.equals(otherText) 
+                || (Double.isFinite(doubleValue) && text.length() <= 15 && otherText.length() <= 15)) {
+                return 0;
+            }
+            try {
+                return new BigDecimal(text).compareTo(new BigDecimal(otherText));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        
+        private static boolean isShortInteger(String value) {
+            int start = value.startsWith("-") ? 1 : 0;
+            int digits = value.length() - start;
+            if (digits < 1 || digits > 18) {
+                return false;
+            }
+            for (int i = start; i < value.length(); i++) {
+                if (!isAsciiDigit(value.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Range for date, datetime and time strings, compared by their position in time:
+     * dates by epoch day, datetimes by epoch second and nanosecond (a missing offset is
+     * read as UTC) and times by second of day. Slashed dates are read month first
+     * unless the first number cannot be a month. The values have already been
+     * validated by inferDataType, so their layout is known.
+     */
+    private static class TemporalRange extends ValueRange {
+        private final String type;
+        private long minSeconds;
+        private long maxSeconds;
+        private int minNanos;
+        private int maxNanos;
+        // Result of the last parse
+        private long seconds;
+        private int nanos;
+        
+        TemporalRange(String type) {
+            this.type = type;
+        }
+        
+        @Override
+        void add(String value) {
+            parse(value);
+            if (minText == null) {
+                minText = value;
+                maxText = value;
+                minSeconds = seconds;
+                maxSeconds = seconds;
+                minNanos = nanos;
+                maxNanos = nanos;
+                return;
+            }
+            if (seconds < minSeconds || (seconds == minSeconds && nanos < minNanos)) {
+                minText = value;
+                minSeconds = seconds;
+                minNanos = nanos;
+            }
+            if (seconds > maxSeconds || (seconds == maxSeconds && nanos > maxNanos)) {
+                maxText = value;
+                maxSeconds = seconds;
+                maxNanos = nanos;
+            }
+        }
+        
+        /**
+         * Position of the value last added on the UTC timeline, in seconds since the epoch.
+         */
+        double lastEpochSeconds() {
+            return seconds + nanos / 1e9;
+        }
+        
+        private void parse(String value) {
+            nanos = 0;
+            if (type.equals("time")) {
+                // HH:MM or HH:MM:SS
+                seconds = digits(value, 0, 2) * 3600 + digits(value, 3, 2) * 60 + (value.length() > 5 ? digits(value, 6, 2) : 0);
+            } else if (value.charAt(2) == '/' || value.charAt(1) == '/') {
+                // M/D/YYYY, or D/M/YYYY when the first number is above 12
+                int firstSlash = value.indexOf('/');
+                int secondSlash = value.indexOf('/', firstSlash + 1);
+                long first = digits(value, 0, firstSlash);
+                long second = digits(value, firstSlash + 1, secondSlash - firstSlash - 1);
+                long year = digits(value, secondSlash + 1, 4);
+                seconds = first > 12 ? daysFromCivil(year, second, first) * 86400 : daysFromCivil(year, first, second) * 86400;
+            } else {
+                // YYYY-MM-DD, optionally followed by [T ]HH:MM:SS[.fraction][Z|+HH:MM]
+                seconds = daysFromCivil(digits(value, 0, 4), digits(value, 5, 2), digits(value, 8, 2)) * 86400;
+                if (value.length() > 10) {
+                    seconds += digits(value, 11, 2) * 3600 + digits(value, 14, 2) * 60 + digits(value, 17, 2);
+                    int pos = 19;
+                    if (pos < value.length() && value.charAt(pos) == '.') {
+                        pos++;
+                        int scale = 100000000;
+                        while (pos < value.length() && isAsciiDigit(value.charAt(pos))) {
+                            nanos += (value.charAt(pos) - '0') * scale;
+                            scale /= 10;
+                            pos++;
+                        }
+                    }
+                    if (pos < value.length() && value.charAt(pos) != 'Z') {
+                        long offset = digits(value, pos + 1, 2) * 3600 + digits(value, pos + 4, 2) * 60;
+                        seconds -= value.charAt(pos) == '-' ? -offset : offset;
+                    }
+                }
+            }
+        }
+        
+        private static long digits(String value, int start, int count) {
+            long result = 0;
+            for (int i = start; i < start + count; i++) {
+                result = result * 10 + (value.charAt(i) - '0');
+            }
+            return result;
+        }
+        
+        /**
+         * Days since 1970-01-01 of a proleptic Gregorian date (Howard Hinnant's days_from_civil).
+         */
+        private static long daysFromCivil(long year, long month, long day) {
+            year -= month <= 2 ? 1 : 0;
+            long era = (year >= 0 ? year : year - 399) / 400;
+            long yearOfEra = year - era * 400;
+            long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+            long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            return era * 146097 + dayOfEra - 719468;
+        }
+    }
+    
+    private static String getValueAsString(JsonElement element) {
+        if (element.isJsonNull()) {
+            return "null";
+        } else if (element.isJsonPrimitive()) {
+            return element.getAsString();
+        } else if (element.isJsonArray()) {
+            return element.toString();
+        } else if (element.isJsonObject()) {
+            return element.toString();
+        }
+        return element.toString();
+    }
+    
+    /**
+     * Classifies a string value as guid, boolean, integer, float, datetime, date, time or string.
+     * The checks are hand-written positional scans instead of regular expressions: this runs for
+     * every string primitive, and {@code String.matches} compiles a new pattern on each call.
+     * The accepted formats are exactly those of the original patterns, in the same precedence:
+     * <ul>
+     *   <li>guid: {@code [0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}} or {@code [0-9a-f]{32}}, case-insensitive</li>
+     *   <li>boolean: {@code true} or {@code false}, case-insensitive</li>
+     *   <li>integer: {@code -?\d+}</li>
+     *   <li>float: {@code -?\d*\.\d+([eE][+-]?\d+)?} or {@code -?\d+\.\d*([eE][+-]?\d+)?}</li>
+     *   <li>datetime: {@code \d{4}-\d{2}-\d{2}[T ]\d{2}:\d{2}:\d{2}(\.\d+)?(Z|[+-]\d{2}:\d{2})?}</li>
+     *   <li>date: {@code \d{4}-\d{2}-\d{2}} or {@code \d{1,2}/\d{1,2}/\d{4}}</li>
+     *   <li>time: {@code \d{2}:\d{2}(:\d{2})?}</li>
+     * </ul>
+     */
+    private static String inferDataType(String value) {
+        if (value == null || value.isEmpty()) {
+            return "string";
+        }
+        int length = value.length();
+        
+        // Check for GUID/UUID (with or without hyphens, case-insensitive)
+        if (length == 36 && isHyphenatedGuid(value)) {
+            return "guid";
+        }
+        if (length == 32 && isHexRun(value, 0, 32)) {
+            return "guid";
+        }
+        
+        // Check for boolean
+        if ((length == 4 || length == 5) && (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false"))) {
+            return "boolean";
+        }
+        
+        char first = value.charAt(0);
+        if (first != '-' && first != '.' && !isAsciiDigit(first)) {
+            return "string";
+        }
+        
+        // Check for integer and floating point
+        String numberType = inferNumberType(value);
+        if (numberType != null) {
+            return numberType;
+        }
+        
+        // Check for date and time formats
+        String temporalType = inferTemporalType(value);
+        return temporalType != null ? temporalType : "string";
+    }
+    
+    /**
+     * Two-way set-associative cache from string values to their inferred types, kept per
+     * property so that enum-like values (status codes, country names) are classified once.
+     * Each set holds its most recently used value first and evicts the other. Long values
+     * are not cached, and a cache that misses most of its first lookups disables itself,
+     * so high-cardinality properties only pay for the counters.
+     */
+    private static class InferenceCache {
+        private static final int SET_BITS = 6;
+        private static final int SLOTS = 2 << SET_BITS;
+        private static final int MAX_LENGTH = 64;
+        // Lookups after which a cache with fewer than a quarter hits gives up
+        private static final int PROBATION = 1024;
+        
+        private String[] values = new String[SLOTS];
+        private final String[] types = new String[SLOTS];
+        long lookups = 0;
+        long hits = 0;
+        
+        String infer(String value) {
+            lookups++;
+            if (values == null || value.length() > MAX_LENGTH) {
+                return inferDataType(value);
+            }
+            // Fibonacci hashing spreads the near-consecutive hashes of similar short strings
+            int slot = ((value.hashCode() * 0x9E3779B9) >>> (32 - SET_BITS)) << 1;
+            if (value.equals(values[slot])) {
+                hits++;
+                return types[slot];
+            }
+            String type;
+            if (value.equals(values[slot + 1])) {
+                hits++;
+                type = types[slot + 1];
+            } else {
+                type = inferDataType(value);
+            }
+            values[slot + 1] = values[slot];
+            types[slot + 1] = types[slot];
+            values[slot] = value;
+            types[slot] = type;
+            if (lookups == PROBATION && hits * 4 < lookups) {
+                values = null;
+            }
+            return type;
+        }
+    }
+    
+    /**
+     * Returns "integer" or "float" when the whole value is a plain decimal number, otherwise null.
+     * An exponent is only accepted after a decimal point, as in the original patterns.
+     */
+    private static String inferNumberType(String value) {
+        int length = value.length();
+        int pos = value.charAt(0) == '-' ? 1 : 0;
+        int integerStart = pos;
+        while (pos < length && isAsciiDigit(value.charAt(pos))) {
+            pos++;
+        }
+        int integerDigits = pos - integerStart;
+        if (pos == length) {
+            return integerDigits > 0 ? "integer" : null;
+        }
+        if (value.charAt(pos) != '.') {
+            return null;
+        }
+        pos++;
+        int fractionStart = pos;
+        while (pos < length && isAsciiDigit(value.charAt(pos))) {
+            pos++;
+        }
+        if (integerDigits == 0 && pos == fractionStart) {
+            return null;
+        }
+        if (pos == length) {
+            return "float";
+        }
+        char exponent = value.charAt(pos);
+        if (exponent != 'e' && exponent != 'E') {
+            return null;
+        }
+        pos++;
+        if (pos < length && (value.charAt(pos) == '+' || value.charAt(pos) == '-')) {
+            pos++;
+        }
+        return pos < length && isDigitRun(value, pos, length - pos) ? "float" : null;
+    }
+    
+    /**
+     * Returns "datetime", "date" or "time" when the value matches one of the supported
+     * ISO 8601 or slashed formats, otherwise null.
+     */
+    private static String inferTemporalType(String value) {
+        int length = value.length();
+        
+        // DateTime: YYYY-MM-DDTHH:MM:SS or YYYY-MM-DD HH:MM:SS, with optional fraction and offset
+        // Date: YYYY-MM-DD
+        if (length >= 10 && isDigitRun(value, 0, 4) && value.charAt(4) == '-' && isDigitRun(value, 5, 2)
+            && value.charAt(7) == '-' && isDigitRun(value, 8, 2)) {
+            if (length == 10) {
+                return "date";
+            }
+            return isIsoTimeSuffix(value) ? "datetime" : null;
+        }
+        
+        // Date: MM/DD/YYYY or DD/MM/YYYY
+        int firstSlash = value.indexOf('/');
+        if (firstSlash == 1 || firstSlash == 2) {
+            int secondSlash = value.indexOf('/', firstSlash + 1);
+            int monthDigits = secondSlash - firstSlash - 1;
+            if (isDigitRun(value, 0, firstSlash) && (monthDigits == 1 || monthDigits == 2)
+                && isDigitRun(value, firstSlash + 1, monthDigits)
+                && length == secondSlash + 5 && isDigitRun(value, secondSlash + 1, 4)) {
+                return "date";
+            }
+            return null;
+        }
+        
+        // Time: HH:MM:SS or HH:MM
+        if ((length == 5 || length == 8) && isDigitRun(value, 0, 2) && value.charAt(2) == ':' && isDigitRun(value, 3, 2)
+            && (length == 5 || (value.charAt(5) == ':' && isDigitRun(value, 6, 2)))) {
+            return "time";
+        }
+        return null;
+    }
+    
+    /**
+     * Checks the part of a datetime after the YYYY-MM-DD prefix:
+     * {@code [T ]HH:MM:SS}, an optional {@code .fraction} and an optional {@code Z} or {@code +HH:MM} offset.
+     */
+    private static boolean isIsoTimeSuffix(String value) {
+        int length = value.length();
+        if (length < 19) {
+            return false;
+        }
+        char separator = value.charAt(10);
+        if ((separator != 'T' && separator != ' ') || !isDigitRun(value, 11, 2) || value.charAt(13) != ':'
+            || !isDigitRun(value, 14, 2) || value.charAt(16) != ':' || !isDigitRun(value, 17, 2)) {
+            return false;
+        }
+        int pos = 19;
+        if (pos < length && value.charAt(pos) == '.') {
+            int fractionStart = ++pos;
+            while (pos < length && isAsciiDigit(value.charAt(pos))) {
+                pos++;
+            }
+            if (pos == fractionStart) {
+                return false;
+            }
+        }
+        if (pos == length) {
+            return true;
+        }
+        char zone = value.charAt(pos);
+        if (zone == 'Z') {
+            return pos + 1 == length;
+        }
+        return (zone == '+' || zone == '-') && length == pos + 6 && isDigitRun(value, pos + 1, 2)
+            && value.charAt(pos + 3) == ':' && isDigitRun(value, pos + 4, 2);
+    }
+    
+    private static boolean isHyphenatedGuid(String value) {
+        return isHexRun(value, 0, 8) && value.charAt(8) == '-' && isHexRun(value, 9, 4) && value.charAt(13) == '-'
+            && isHexRun(value, 14, 4) && value.charAt(18) == '-' && isHexRun(value, 19, 4) && value.charAt(23) == '-'
+            && isHexRun(value, 24, 12);
+    }
+    
+    private static boolean isHexRun(String value, int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (!isAsciiDigit(c) && !((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isDigitRun(String value, int start, int count) {
+        if (count <= 0 || start + count > value.length()) {
+            return false;
+        }
+        for (int i = start; i < start + count; i++) {
+            if (!isAsciiDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    private static class PropertyInfo {
+        long count = 0;
+        Map<String, Object> typeExamples = new LinkedHashMap<>();
+        Map<String, Long> typeCounts = new LinkedHashMap<>();
+        Set<String> distinctValues = new HashSet<>();
+        // Replaces distinctValues once it outgrows the sketch in approximate mode
+        HyperLogLog distinctSketch = null;
+        // HyperLogLog precision for this property, or 0 to keep the exact set
+        int distinctPrecision = 0;
+        Map<String, Set<String>> inferredTypesSet = new LinkedHashMap<>();
+        Map<String, Map<String, Long>> inferredTypeCounts = new LinkedHashMap<>();
+        // Min/max per data type, keyed by inferred type ("number" and "boolean" for those data types)
+        Map<String, Map<String, ValueRange>> ranges = new LinkedHashMap<>();
+        // Set when the property was only seen in sampled array elements
+        SampleStats sample = null;
+        // Most frequent primitive values, when --topValues is set
+        SpaceSaving topValues = null;
+        // Lower bound on the distinct count from merged reports that did not list their values
+        long distinctFloor = 0;
+        // Whether a merged report listed the distinct values of this property
+        boolean hasValueList = false;
+        // Where large exact distinct value sets are moved, or null to keep them on the heap
+        OffHeapMemory offHeap = null;
+        // Inferred types of recently seen string values, created with the first string
+        InferenceCache inferenceCache = null;
+        // Quantile sketches keyed like ranges, for numbers and numeric or datetime strings when --quantiles is set
+        Map<String, QuantileSketch> quantiles = null;
+        
+        void addDistinctValue(String value) {
+            if (distinctSketch != null) {
+                distinctSketch.add(value);
+            } else {
+                distinctValues.add(value);
+                sketchIfLarge();
+                moveOffHeapIfLarge();
+            }
+        }
+        
+        /**
+         * Moves a large exact set off the heap, where it costs its UTF-8 bytes and a few
+         * words of index per value instead of a String and a HashMap node.
+         */
+        void moveOffHeapIfLarge() {
+            if (offHeap != null && distinctValues != null && distinctValues.size() > OffHeapStringSet.HEAP_LIMIT
+                && !(distinctValues instanceof OffHeapStringSet)) {
+                Set<String> moved = new OffHeapStringSet(offHeap, distinctValues.size() * 2);
+                moved.addAll(distinctValues);
+                distinctValues = moved;
+            }
+        }
+        
+        long getDistinctCount() {
+            long count = distinctSketch != null ? distinctSketch.estimate() : distinctValues.size();
+            return Math.max(count, distinctFloor);
+        }
+        
+        boolean isDistinctCountEstimated() {
+            return distinctSketch != null || distinctFloor > 0;
+        }
+        
+        /**
+         * Writes everything accumulated for this property except sample statistics, which
+         * only exist in single-document runs.
+         */
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(count);
+            out.writeInt(typeExamples.size());
+            for (Map.Entry<String, Object> example : typeExamples.entrySet()) {
+                Checkpoint.writeString(out, example.getKey());
+                Object value = example.getValue();
+                if (value instanceof Boolean) {
+                    out.writeByte('b');
+                    out.writeBoolean((Boolean) value);
+                } else if (value instanceof Number) {
+                    out.writeByte('n');
+                    Checkpoint.writeString(out, value.toString());
+                } else if (value instanceof String) {
+                    out.writeByte('s');
+                    Checkpoint.writeString(out, (String) value);
+                } else {
+                    out.writeByte('0');
+                }
+            }
+            Checkpoint.writeCounts(out, typeCounts);
+            
+            out.writeInt(distinctPrecision);
+            out.writeBoolean(distinctSketch != null);
+            if (distinctSketch != null) {
+                distinctSketch.writeTo(out);
+            } else {
+                out.writeInt(distinctValues.size());
+                for (String value : distinctValues) {
+                    Checkpoint.writeString(out, value);
+                }
+            }
+            
+            out.writeInt(inferredTypesSet.size());
+            for (Map.Entry<String, Set<String>> inferred : inferredTypesSet.entrySet()) {
+                Checkpoint.writeString(out, inferred.getKey());
+                out.writeInt(inferred.getValue().size());
+                for (String type : inferred.getValue()) {
+                    Checkpoint.writeString(out, type);
+                }
+            }
+            out.writeInt(inferredTypeCounts.size());
+            for (Map.Entry<String, Map<String, Long>> inferred : inferredTypeCounts.entrySet()) {
+                Checkpoint.writeString(out, inferred.getKey());
+                Checkpoint.writeCounts(out, inferred.getValue());
+            }
+            
+            // A range is restored by adding its extremes again, as in ValueRange.merge
+            out.writeInt(ranges.size());
+            for (Map.Entry<String, Map<String, ValueRange>> typeRanges : ranges.entrySet()) {
+                Checkpoint.writeString(out, typeRanges.getKey());
+                out.writeInt(typeRanges.getValue().size());
+                for (Map.Entry<String, ValueRange> range : typeRanges.getValue().entrySet()) {
+                    Checkpoint.writeString(out, range.getKey());
+                    Checkpoint.writeNullableString(out, range.getValue().minText);
+                    Checkpoint.writeNullableString(out, range.getValue().maxText);
+                }
+            }
+            
+            out.writeBoolean(topValues != null);
+            if (topValues != null) {
+                topValues.writeTo(out);
+            }
+            out.writeBoolean(quantiles != null);
+            if (quantiles != null) {
+                out.writeInt(quantiles.size());
+                for (Map.Entry<String, QuantileSketch> sketch : quantiles.entrySet()) {
+                    Checkpoint.writeString(out, sketch.getKey());
+                    sketch.getValue().writeTo(out);
+                }
+            }
+        }
+        
+        static PropertyInfo readFrom(DataInputStream in) throws IOException {
+            PropertyInfo info = new PropertyInfo();
+            info.count = in.readLong();
+            int examples = in.readInt();
+            for (int i = 0; i < examples; i++) {
+                String dataType = Checkpoint.readString(in);
+                byte kind = in.readByte();
+                Object value = null;
+                if (kind == 'b') {
+                    value = in.readBoolean();
+                } else if (kind == 'n') {
+                    value = new LazilyParsedNumber(Checkpoint.readString(in));
+                } else if (kind == 's') {
+                    value = Checkpoint.readString(in);
+                }
+                info.typeExamples.put(dataType, value);
+            }
+            info.typeCounts = Checkpoint.readCounts(in);
+            
+            info.distinctPrecision = in.readInt();
+            if (in.readBoolean()) {
+                info.distinctSketch = HyperLogLog.readFrom(in);
+                info.distinctValues = null;
+            } else {
+                int values = in.readInt();
+                for (int i = 0; i < values; i++) {
+                    info.distinctValues.add(Checkpoint.readString(in));
+                }
+            }
+            
+            int inferredSets = in.readInt();
+            for (int i = 0; i < inferredSets; i++) {
+                String dataType = Checkpoint.readString(in);
+                Set<String> types = new LinkedHashSet<>();
+                int size = in.readInt();
+                for (int j = 0; j < size; j++) {
+                    types.add(Checkpoint.readString(in));
+                }
+                info.inferredTypesSet.put(dataType, types);
+            }
+            int inferredCounts = in.readInt();
+            for (int i = 0; i < inferredCounts; i++) {
+                String dataType = Checkpoint.readString(in);
+                info.inferredTypeCounts.put(dataType, Checkpoint.readCounts(in));
+            }
+            
+            int rangeTypes = in.readInt();
+            for (int i = 0; i < rangeTypes; i++) {
+                Map<String, ValueRange> typeRanges = new LinkedHashMap<>();
+                info.ranges.put(Checkpoint.readString(in), typeRanges);
+                int size = in.readInt();
+                for (int j = 0; j < size; j++) {
+                    String key = Checkpoint.readString(in);
+                    ValueRange range = createValueRange(key);
+                    String minText = Checkpoint.readNullableString(in);
+                    String maxText = Checkpoint.readNullableString(in);
+                    if (minText != null) {
+                        range.add(minText);
+                        range.add(maxText);
+                    }
+                    typeRanges.put(key, range);
+                }
+            }
+            
+            if (in.readBoolean()) {
+                info.topValues = SpaceSaving.readFrom(in);
+            }
+            if (in.readBoolean()) {
+                info.quantiles = new HashMap<>();
+                int sketches = in.readInt();
+                for (int i = 0; i < sketches; i++) {
+                    info.quantiles.put(Checkpoint.readString(in), QuantileSketch.readFrom(in));
+                }
+            }
+            return info;
+        }
+        
+        /**
+         * Switches from the exact set to a sketch once the set would use more memory than
+         * the sketch's registers. Small properties keep exact counts in approximate mode.
+         */
+        void sketchIfLarge() {
+            if (distinctPrecision > 0 && distinctSketch == null 
+                && distinctValues.size() > HyperLogLog.exactLimit(distinctPrecision)) {
+                distinctSketch = new HyperLogLog(distinctPrecision);
+                for (String value : distinctValues) {
+                    distinctSketch.add(value);
+                }
+                releaseDistinctValues(distinctValues);
+                distinctValues = null;
+            }
+        }
+    }
+    
+    private static void releaseDistinctValues(Set<String> values) {
+        if (values instanceof OffHeapStringSet) {
+            ((OffHeapStringSet) values).release();
+        }
+    }
+    
+    /**
+     * Memory outside the Java heap shared by the off-heap distinct value sets of one run.
+     * Buffers are direct until the budget is used up; after that they are mapped from a
+     * temporary spill file, so the operating system pages them out as needed instead of
+     * the JVM running out of memory. Released spill regions are reused for buffers of the
+     * same size (arenas, and tables after a set is released); otherwise the spill file only
+     * grows until the memory is closed, which closes and deletes it.
+     */
+    private static class OffHeapMemory implements java.io.Closeable {
+        private final long budget;
+        private long allocated = 0;
+        private File spillFile;
+        private FileChannel spill;
+        private long spillLength = 0;
+        // Released spill regions by size
+        private final Map<Integer, Deque<MappedByteBuffer>> freeRegions = new HashMap<>();
+        
+        OffHeapMemory(long budget) {
+            this.budget = budget;
+        }
+        
+        /**
+         * Returns a zero-filled buffer of the given size.
+         */
+        synchronized ByteBuffer allocate(int bytes) {
+            if (allocated + bytes <= budget) {
+                allocated += bytes;
+                return ByteBuffer.allocateDirect(bytes);
+            }
+            Deque<MappedByteBuffer> reusable = freeRegions.get(bytes);
+            if (reusable != null && !reusable.isEmpty()) {
+                MappedByteBuffer buffer = reusable.pop();
+                buffer.clear();
+                for (int i = 0; i + 8 <= bytes; i += 8) {
+                    buffer.putLong(i, 0);
+                }
+                for (int i = bytes & ~7; i < bytes; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                return buffer;
+            }
+            try {
+                if (spill == null) {
+                    spillFile = File.createTempFile("apidumper-distinct", ".spill");
+                    spillFile.deleteOnExit();
+                    spill = new RandomAccessFile(spillFile, "rw").getChannel();
+                }
+                MappedByteBuffer buffer = spill.map(FileChannel.MapMode.READ_WRITE, spillLength, bytes);
+                spillLength += bytes;
+                return buffer;
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException("Cannot spill distinct values to disk: " + e.getMessage(), e);
+            }
+        }
+        
+        /**
+         * Returns a direct buffer's bytes to the budget, or a spill region to the free list.
+         * Direct memory itself is freed when the buffer is garbage collected.
+         */
+        synchronized void free(ByteBuffer buffer) {
+            if (buffer instanceof MappedByteBuffer) {
+                freeRegions.computeIfAbsent(buffer.capacity(), size -> new ArrayDeque<>()).push((MappedByteBuffer) buffer);
+            } else {
+                allocated -= buffer.capacity();
+            }
+        }
+        
+        /**
+         * Closes and deletes the spill file. The sets using this memory must not be used afterwards.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            freeRegions.clear();
+            if (spill != null) {
+                spill.close();
+                spill = null;
+                spillFile.delete();
+            }
+        }
+    }
+    
+    /**
+     * Exact set of strings stored outside the Java heap. Each value is appended to an arena
+     * buffer as a record of its hash, its length and its UTF-8 bytes; an open-addressing
+     * table with linear probing maps hashes to record addresses (arena index in the high
+     * word, offset in the low word, plus one so that zero marks an empty slot). The table is
+     * split into segments of at most 2^24 slots, so byte offsets stay within a buffer's int
+     * index range however large the set grows. The table grows by rehashing the stored
+     * hashes, so values are never decoded to resize. The heap only holds the lists of
+     * buffers. Iteration returns the values in insertion order.
+     */
+    private static class OffHeapStringSet extends AbstractSet<String> {
+        // Sets up to this size stay on the heap, where they are cheaper to create
+        static final int HEAP_LIMIT = 4096;
+        private static final int ARENA_SIZE = 1 << 20;
+        private static final int RECORD_HEADER = 8;
+        private static final int SEGMENT_BITS = 24;
+        private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+        // Largest table; it is not grown further, which a Set's int size never needs
+        private static final int MAX_SLOTS = 1 << 30;
+        
+        private final OffHeapMemory memory;
+        private final List<ByteBuffer> arenas = new ArrayList<>();
+        private ByteBuffer[] table;
+        private int mask;
+        private int size = 0;
+        
+        OffHeapStringSet(OffHeapMemory memory, int expectedSize) {
+            this.memory = memory;
+            long slots = Long.highestOneBit(Math.max(16L, expectedSize) * 2 - 1) << 1;
+            table = allocateTable((int) Math.min(slots, MAX_SLOTS));
+        }
+        
+        @Override
+        public int size() {
+            return size;
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+            byte[] bytes = ((String) o).getBytes(StandardCharsets.UTF_8);
+            return getSlot(findSlot(hash(bytes), bytes)) != 0;
+        }
+        
+        @Override
+        public boolean add(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int hash = hash(bytes);
+            int slot = findSlot(hash, bytes);
+            if (getSlot(slot) != 0) {
+                return false;
+            }
+            if (size == mask) {
+                // Keep one empty slot so that probing terminates
+                throw new IllegalStateException("Too many distinct values for an off-heap set");
+            }
+            setSlot(slot, append(hash, bytes) + 1);
+            size++;
+            if (size > (long) (mask + 1) / 10 * 7 && mask + 1 < MAX_SLOTS) {
+                grow();
+            }
+            return true;
+        }
+        
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int arena = 0;
+                private int position = 0;
+                
+                @Override
+                public boolean hasNext() {
+                    while (arena < arenas.size()) {
+                        ByteBuffer buffer = arenas.get(arena);
+                        if (position < buffer.position()) {
+                            return true;
+                        }
+                        arena++;
+                        position = 0;
+                    }
+                    return false;
+                }
+                
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    ByteBuffer buffer = arenas.get(arena);
+                    byte[] bytes = new byte[buffer.getInt(position + 4)];
+                    for (int i = 0; i < bytes.length; i++) {
+                        bytes[i] = buffer.get(position + RECORD_HEADER + i);
+                    }
+                    position += RECORD_HEADER + bytes.length;
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+            };
+        }
+        
+        /**
+         * Hands the buffers back to the memory budget; the set must not be used afterwards.
+         */
+        void release() {
+            for (ByteBuffer arena : arenas) {
+                memory.free(arena);
+            }
+            for (ByteBuffer segment : table) {
+                memory.free(segment);
+            }
+            arenas.clear();
+            size = 0;
+        }
+        
+        private ByteBuffer[] allocateTable(int slots) {
+            ByteBuffer[] segments = new ByteBuffer[Math.max(1, slots >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = memory.allocate(Math.min(slots, 1 << SEGMENT_BITS) * 8);
+            }
+            mask = slots - 1;
+            return segments;
+        }
+        
+        private long getSlot(int slot) {
+            return table[slot >>> SEGMENT_BITS].getLong((slot & SEGMENT_MASK) << 3);
+        }
+        
+        private void setSlot(int slot, long address) {
+            table[slot >>> SEGMENT_BITS].putLong((slot & SEGMENT_MASK) << 3, address);
+        }
+        
+        /**
+         * Returns the slot holding the value, or the empty slot where it belongs.
+         */
+        private int findSlot(int hash, byte[] bytes) {
+            int slot = hash & mask;
+            while (true) {
+                long address = getSlot(slot);
+                if (address == 0 || matches(address - 1, hash, bytes)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        
+        private boolean matches(long address, int hash, byte[] bytes) {
+            ByteBuffer buffer = arenas.get((int) (address >>> 32));
+            int position = (int) address;
+            if (buffer.getInt(position) != hash || buffer.getInt(position + 4) != bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (buffer.get(position + RECORD_HEADER + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private long append(int hash, byte[] bytes) {
+            int recordSize = RECORD_HEADER + bytes.length;
+            ByteBuffer buffer = arenas.isEmpty() ? null : arenas.get(arenas.size() - 1);
+            if (buffer == null || buffer.remaining() < recordSize) {
+                buffer = memory.allocate(Math.max(ARENA_SIZE, recordSize));
+                arenas.add(buffer);
+            }
+            long address = ((long) (arenas.size() - 1) << 32) | buffer.position();
+            buffer.putInt(hash).putInt(bytes.length).put(bytes);
+            return address;
+        }
+        
+        private void grow() {
+            ByteBuffer[] old = table;
+            int oldSlots = mask + 1;
+            table = allocateTable(oldSlots * 2);
+            for (int i = 0; i < oldSlots; i++) {
+                long address = old[i >>> SEGMENT_BITS].getLong((i & SEGMENT_MASK) << 3);
+                if (address != 0) {
+                    ByteBuffer buffer = arenas.get((int) ((address - 1) >>> 32));
+                    int slot = buffer.getInt((int) (address - 1)) & mask;
+                    while (getSlot(slot) != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    setSlot(slot, address);
+                }
+            }
+            for (ByteBuffer segment : old) {
+                memory.free(segment);
+            }
+        }
+        
+        private static int hash(byte[] bytes) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : bytes) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return (int) hash;
+        }
+    }
+    
+    /**
+     * HyperLogLog sketch estimating the number of distinct strings added to it in
+     * fixed memory: 2^precision one-byte registers, with a relative standard error
+     * of about 1.04 / sqrt(2^precision). Sketches of equal precision merge losslessly.
+     */
+    private static class HyperLogLog {
+        static final int MIN_PRECISION = 4;
+        static final int MAX_PRECISION = 18;
+        static final int DEFAULT_PRECISION = 14;
+        
+        private final int precision;
+        private final byte[] registers;
+        
+        HyperLogLog(int precision) {
+            this.precision = precision;
+            this.registers = new byte[1 << precision];
+        }
+        
+        /**
+         * Number of distinct values worth keeping exactly before switching to a sketch
+         * of the given precision; a small string set costs roughly 64 bytes per entry.
+         */
+        static int exactLimit(int precision) {
+            return (1 << precision) / 64;
         }
-    }
-    
-    private static void outputSchemaReport(String schemaReportJson, String reportFile) {
-        if (schemaReportJson == null) {
-            return; // Error already handled in generateSchemaReportJson
+        
+        void add(String value) {
+            long hash = hash64(value);
+            int index = (int) (hash >>> (64 - precision));
+            // Position of the first set bit in the remaining bits, capped by a sentinel bit
+            int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
         }
         
-        if (reportFile != null && !reportFile.trim().isEmpty()) {
-            // Write to file
-            try (PrintWriter writer = new PrintWriter(new FileWriter(reportFile))) {
-                writer.println(schemaReportJson);
-                System.out.println("Schema report written to: " + reportFile);
-            } catch (IOException e) {
-                System.err.println("Error writing schema report to file: " + e.getMessage());
-                // Fall back to console output
-                System.out.println();
-                System.out.println("Schema Report:");
-                System.out.println(schemaReportJson);
+        void merge(HyperLogLog other) {
+            if (other.precision != precision) {
+                throw new IllegalArgumentException("Cannot merge HyperLogLog sketches of precision " 
+                                                   + precision + " and " + other.precision);
+            }
+            for (int i = 0; i < registers.length; i++) {
+                if (other.registers[i] > registers[i]) {
+                    registers[i] = other.registers[i];
+                }
             }
-        } else {
-            // Output to console
-            System.out.println();
-            System.out.println("Schema Report:");
-            System.out.println(schemaReportJson);
         }
-    }
-    
-    private static void analyzeJsonElement(JsonElement element, String path, Map<String, PropertyInfo> propertyMap) {
-        if (element.isJsonObject()) {
-            JsonObject obj = element.getAsJsonObject();
-            for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
-                String key = entry.getKey();
-                String newPath = path.isEmpty() ? key : path + "." + key;
-                JsonElement value = entry.getValue();
-                
-                recordProperty(newPath, value, propertyMap);
-                analyzeJsonElement(value, newPath, propertyMap);
+        
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeByte(precision);
+            out.write(registers);
+        }
+        
+        static HyperLogLog readFrom(DataInputStream in) throws IOException {
+            HyperLogLog sketch = new HyperLogLog(in.readByte());
+            in.readFully(sketch.registers);
+            return sketch;
+        }
+        
+        long estimate() {
+            int m = registers.length;
+            double sum = 0;
+            int zeros = 0;
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
             }
-        } else if (element.isJsonArray()) {
-            JsonArray array = element.getAsJsonArray();
-            for (JsonElement item : array) {
-                analyzeJsonElement(item, path, propertyMap);
+            double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+            double estimate = alpha * m * m / sum;
+            // Linear counting is more accurate while many registers are still empty
+            if (estimate <= 2.5 * m && zeros > 0) {
+                estimate = m * Math.log((double) m / zeros);
+            }
+            return Math.round(estimate);
+        }
+        
+        /**
+         * 64-bit FNV-1a over the UTF-16 chars, finished with the MurmurHash3 mixer
+         * so every input bit affects the register index and the rank.
+         */
+        private static long hash64(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
             }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
         }
     }
     
-    private static void recordProperty(String propertyName, JsonElement value, Map<String, PropertyInfo> propertyMap) {
-        PropertyInfo info = propertyMap.get(propertyName);
-        if (info == null) {
-            info = new PropertyInfo();
-            propertyMap.put(propertyName, info);
+    /**
+     * Space-Saving summary of the most frequent values in a stream, in fixed memory:
+     * at most capacity counters. A value that is not tracked when the summary is full
+     * takes over the counter with the smallest count, inheriting that count as its
+     * error. Each count overestimates the true frequency by at most its error, and any
+     * value occurring more than total / capacity times is guaranteed to be tracked.
+     * The counters form a min-heap on count so the smallest one is found in O(1).
+     */
+    private static class SpaceSaving {
+        static class Counter {
+            final String value;
+            long count;
+            long error;
+            
+            Counter(String value, long count, long error) {
+                this.value = value;
+                this.count = count;
+                this.error = error;
+            }
         }
         
-        info.count++;
+        private final int capacity;
+        private final Counter[] heap;
+        private final Map<String, Integer> positions;
+        private int size = 0;
         
-        String dataType = getJsonType(value);
-        if (!info.typeExamples.containsKey(dataType)) {
-            info.typeExamples.put(dataType, getExampleValue(value));
+        SpaceSaving(int capacity) {
+            this.capacity = capacity;
+            this.heap = new Counter[capacity];
+            this.positions = new HashMap<>();
         }
         
-        // Track data type counts
-        info.typeCounts.put(dataType, info.typeCounts.getOrDefault(dataType, 0) + 1);
+        /**
+         * Counts weight occurrences of value, of which up to error may be overcounted.
+         */
+        void add(String value, long weight, long error) {
+            Integer position = positions.get(value);
+            if (position != null) {
+                heap[position].count += weight;
+                heap[position].error += error;
+                siftDown(position);
+            } else if (size < capacity) {
+                heap[size] = new Counter(value, weight, error);
+                positions.put(value, size);
+                siftUp(size++);
+            } else {
+                Counter smallest = heap[0];
+                positions.remove(smallest.value);
+                heap[0] = new Counter(value, smallest.count + weight, smallest.count + error);
+                positions.put(value, 0);
+                siftDown(0);
+            }
+        }
         
-        // Track distinct values (convert to string representation for comparison)
-        String valueStr = getValueAsString(value);
-        info.distinctValues.add(valueStr);
+        int size() {
+            return size;
+        }
         
-        // Track min/max values for all types
-        if (!info.minValues.containsKey(dataType)) {
-            info.minValues.put(dataType, new LinkedHashMap<>());
+        /**
+         * Replays the counters of other as weighted additions, which keeps the error bound
+         * of a summary over both streams.
+         */
+        void merge(SpaceSaving other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.heap[i].value, other.heap[i].count, other.heap[i].error);
+            }
         }
-        if (!info.maxValues.containsKey(dataType)) {
-            info.maxValues.put(dataType, new LinkedHashMap<>());
+        
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(capacity);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                Checkpoint.writeString(out, heap[i].value);
+                out.writeLong(heap[i].count);
+                out.writeLong(heap[i].error);
+            }
         }
         
-        // Handle string values with inferred types
-        if (dataType.equals("string") && value.isJsonPrimitive()) {
-            String strValue = value.getAsString();
-            String inferredType = inferDataType(strValue);
-            
-            // Track all unique inferred types for this property
-            if (!info.inferredTypesSet.containsKey(dataType)) {
-                info.inferredTypesSet.put(dataType, new LinkedHashSet<>());
+        static SpaceSaving readFrom(DataInputStream in) throws IOException {
+            SpaceSaving summary = new SpaceSaving(in.readInt());
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                // Written in heap order, so the heap property holds as they are appended
+                summary.heap[i] = new Counter(Checkpoint.readString(in), in.readLong(), in.readLong());
+                summary.positions.put(summary.heap[i].value, i);
             }
-            info.inferredTypesSet.get(dataType).add(inferredType);
-            
-            // Track inferred type counts
-            if (!info.inferredTypeCounts.containsKey(dataType)) {
-                info.inferredTypeCounts.put(dataType, new LinkedHashMap<>());
+            summary.size = size;
+            return summary;
+        }
+        
+        /**
+         * Returns the tracked values, most frequent first; ties are ordered by value.
+         */
+        List<Counter> getTop() {
+            List<Counter> top = new ArrayList<>(Arrays.asList(heap).subList(0, size));
+            top.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : a.value.compareTo(b.value));
+            return top;
+        }
+        
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (heap[parent].count <= heap[position].count) {
+                    break;
+                }
+                swap(position, parent);
+                position = parent;
             }
-            Map<String, Integer> inferredCounts = info.inferredTypeCounts.get(dataType);
-            inferredCounts.put(inferredType, inferredCounts.getOrDefault(inferredType, 0) + 1);
-            
-            updateMinMaxValues(info.minValues.get(dataType), info.maxValues.get(dataType), inferredType, strValue);
         }
-        // Handle numeric types directly
-        else if (dataType.equals("number") && value.isJsonPrimitive()) {
-            JsonPrimitive primitive = value.getAsJsonPrimitive();
-            updateMinMaxValuesForNumber(info.minValues.get(dataType), info.maxValues.get(dataType), primitive);
+        
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && heap[left].count < heap[smallest].count) {
+                    smallest = left;
+                }
+                if (right < size && heap[right].count < heap[smallest].count) {
+                    smallest = right;
+                }
+                if (smallest == position) {
+                    return;
+                }
+                swap(position, smallest);
+                position = smallest;
+            }
         }
-        // Handle boolean types
-        else if (dataType.equals("boolean") && value.isJsonPrimitive()) {
-            String boolValue = value.getAsString();
-            updateMinMaxValues(info.minValues.get(dataType), info.maxValues.get(dataType), "boolean", boolValue);
+        
+        private void swap(int i, int j) {
+            Counter counter = heap[i];
+            heap[i] = heap[j];
+            heap[j] = counter;
+            positions.put(heap[i].value, i);
+            positions.put(heap[j].value, j);
         }
     }
     
-    private static String getJsonType(JsonElement element) {
-        if (element.isJsonNull()) {
-            return "null";
-        } else if (element.isJsonPrimitive()) {
-            JsonPrimitive primitive = element.getAsJsonPrimitive();
-            if (primitive.isBoolean()) {
-                return "boolean";
-            } else if (primitive.isNumber()) {
-                return "number";
-            } else if (primitive.isString()) {
-                return "string";
+    // Quantiles reported for each sketch, and the number of equal-width histogram buckets
+    private static final double[] REPORTED_QUANTILES = { 0.5, 0.9, 0.99 };
+    private static final int HISTOGRAM_BUCKETS = 10;
+    
+    /**
+     * KLL quantile sketch over doubles. Values go into a stack of compactors: when a level
+     * fills up it is sorted and every other value is promoted to the next level with twice
+     * the weight. Capacities shrink by 2/3 per level below the top, so the sketch holds
+     * about 3 * K values whatever the stream length, and the rank error is about 1.7% at
+     * K = 200. Streams of up to K values are kept exactly. The coin deciding which half is
+     * promoted alternates instead of being random, so a given input always gives the same
+     * report. Sketches merge by concatenating their levels and compacting.
+     */
+    private static class QuantileSketch {
+        static final int K = 200;
+        
+        private final List<double[]> levels = new ArrayList<>();
+        private final List<Integer> sizes = new ArrayList<>();
+        private long count = 0;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private boolean promoteOdd = false;
+        
+        QuantileSketch() {
+            addLevel();
+        }
+        
+        long getCount() {
+            return count;
+        }
+        
+        void add(double value) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                // Beyond double range, such as 1e400; min/max still track these exactly
+                return;
+            }
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            append(0, value);
+            if (sizes.get(0) >= capacity(0)) {
+                compress();
             }
-        } else if (element.isJsonArray()) {
-            return "array";
-        } else if (element.isJsonObject()) {
-            return "object";
         }
-        return "unknown";
-    }
-    
-    private static Object getExampleValue(JsonElement element) {
-        if (element.isJsonNull()) {
-            return null;
-        } else if (element.isJsonPrimitive()) {
-            JsonPrimitive primitive = element.getAsJsonPrimitive();
-            if (primitive.isBoolean()) {
-                return primitive.getAsBoolean();
-            } else if (primitive.isNumber()) {
-                return primitive.getAsNumber();
-            } else if (primitive.isString()) {
-                return primitive.getAsString();
+        
+        void merge(QuantileSketch other) {
+            for (int level = 0; level < other.levels.size(); level++) {
+                while (levels.size() <= level) {
+                    addLevel();
+                }
+                double[] values = other.levels.get(level);
+                for (int i = 0; i < other.sizes.get(level); i++) {
+                    append(level, values[i]);
+                }
             }
-        } else if (element.isJsonArray()) {
-            return "[array]";
-        } else if (element.isJsonObject()) {
-            return "{object}";
+            count += other.count;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            compress();
         }
-        return element.toString();
-    }
-    
-    
-    private static void updateMinMaxValuesForNumber(Map<String, String> minMap, Map<String, String> maxMap, JsonPrimitive primitive) {
-        try {
-            double doubleValue = primitive.getAsDouble();
-            String valueStr = primitive.getAsString();
-            
-            if (!minMap.containsKey("number")) {
-                minMap.put("number", valueStr);
-                maxMap.put("number", valueStr);
-            } else {
-                double currentMin = Double.parseDouble(minMap.get("number"));
-                double currentMax = Double.parseDouble(maxMap.get("number"));
-                if (doubleValue < currentMin) {
-                    minMap.put("number", valueStr);
+        
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(count);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            out.writeBoolean(promoteOdd);
+            out.writeInt(levels.size());
+            for (int level = 0; level < levels.size(); level++) {
+                out.writeInt(sizes.get(level));
+                for (int i = 0; i < sizes.get(level); i++) {
+                    out.writeDouble(levels.get(level)[i]);
+                }
+            }
+        }
+        
+        static QuantileSketch readFrom(DataInputStream in) throws IOException {
+            QuantileSketch sketch = new QuantileSketch();
+            sketch.count = in.readLong();
+            sketch.min = in.readDouble();
+            sketch.max = in.readDouble();
+            sketch.promoteOdd = in.readBoolean();
+            int levelCount = in.readInt();
+            for (int level = 0; level < levelCount; level++) {
+                if (level > 0) {
+                    sketch.addLevel();
                 }
-                if (doubleValue > currentMax) {
-                    maxMap.put("number", valueStr);
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    sketch.append(level, in.readDouble());
                 }
             }
-        } catch (NumberFormatException e) {
-            // Skip if parsing fails
+            return sketch;
         }
-    }
-    
-    private static void updateMinMaxValues(Map<String, String> minMap, Map<String, String> maxMap, String inferredType, String value) {
-        // Update min/max based on inferred type
-        switch (inferredType) {
-            case "integer":
-                try {
-                    long longValue = Long.parseLong(value);
-                    if (!minMap.containsKey(inferredType)) {
-                        minMap.put(inferredType, value);
-                        maxMap.put(inferredType, value);
-                    } else {
-                        long currentMin = Long.parseLong(minMap.get(inferredType));
-                        long currentMax = Long.parseLong(maxMap.get(inferredType));
-                        if (longValue < currentMin) {
-                            minMap.put(inferredType, value);
-                        }
-                        if (longValue > currentMax) {
-                            maxMap.put(inferredType, value);
-                        }
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip if parsing fails
+        
+        /**
+         * Returns the smallest retained value whose rank reaches the fraction q of the stream.
+         */
+        double getQuantile(double q) {
+            List<double[]> weighted = new ArrayList<>();
+            for (int level = 0; level < levels.size(); level++) {
+                double[] values = levels.get(level);
+                for (int i = 0; i < sizes.get(level); i++) {
+                    weighted.add(new double[] { values[i], 1L << level });
                 }
-                break;
-                
-            case "float":
-                try {
-                    double doubleValue = Double.parseDouble(value);
-                    if (!minMap.containsKey(inferredType)) {
-                        minMap.put(inferredType, value);
-                        maxMap.put(inferredType, value);
-                    } else {
-                        double currentMin = Double.parseDouble(minMap.get(inferredType));
-                        double currentMax = Double.parseDouble(maxMap.get(inferredType));
-                        if (doubleValue < currentMin) {
-                            minMap.put(inferredType, value);
-                        }
-                        if (doubleValue > currentMax) {
-                            maxMap.put(inferredType, value);
-                        }
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip if parsing fails
+            }
+            weighted.sort((a, b) -> Double.compare(a[0], b[0]));
+            double total = 0;
+            for (double[] entry : weighted) {
+                total += entry[1];
+            }
+            double target = q * total;
+            double cumulative = 0;
+            for (double[] entry : weighted) {
+                cumulative += entry[1];
+                if (cumulative >= target) {
+                    return Math.max(min, Math.min(max, entry[0]));
                 }
-                break;
-                
-            case "date":
-            case "datetime":
-            case "time":
-                // For date/time types, compare lexicographically (works for ISO 8601)
-                if (!minMap.containsKey(inferredType)) {
-                    minMap.put(inferredType, value);
-                    maxMap.put(inferredType, value);
-                } else {
-                    String currentMin = minMap.get(inferredType);
-                    String currentMax = maxMap.get(inferredType);
-                    if (value.compareTo(currentMin) < 0) {
-                        minMap.put(inferredType, value);
-                    }
-                    if (value.compareTo(currentMax) > 0) {
-                        maxMap.put(inferredType, value);
+            }
+            return max;
+        }
+        
+        /**
+         * Returns the edges of equal-width buckets between min and max, or a single bucket
+         * when all values are equal.
+         */
+        double[] getBucketBounds(int buckets) {
+            if (min == max) {
+                return new double[] { min, max };
+            }
+            double[] bounds = new double[buckets + 1];
+            for (int i = 0; i <= buckets; i++) {
+                bounds[i] = min + (max - min) * i / buckets;
+            }
+            bounds[buckets] = max;
+            return bounds;
+        }
+        
+        /**
+         * Estimates how many values fall in each bucket; the first bucket includes its
+         * lower edge, every bucket includes its upper edge.
+         */
+        long[] getBucketCounts(double[] bounds) {
+            long[] counts = new long[bounds.length - 1];
+            long below = 0;
+            for (int i = 0; i < counts.length; i++) {
+                long upTo = i == counts.length - 1 ? count : getRank(bounds[i + 1]);
+                counts[i] = upTo - below;
+                below = upTo;
+            }
+            return counts;
+        }
+        
+        /**
+         * Estimated number of values less than or equal to value.
+         */
+        private long getRank(double value) {
+            long rank = 0;
+            for (int level = 0; level < levels.size(); level++) {
+                double[] values = levels.get(level);
+                for (int i = 0; i < sizes.get(level); i++) {
+                    if (values[i] <= value) {
+                        rank += 1L << level;
                     }
                 }
-                break;
-                
-            case "guid":
-                // For GUIDs, compare lexicographically
-                if (!minMap.containsKey(inferredType)) {
-                    minMap.put(inferredType, value);
-                    maxMap.put(inferredType, value);
-                } else {
-                    String currentMin = minMap.get(inferredType);
-                    String currentMax = maxMap.get(inferredType);
-                    if (value.compareTo(currentMin) < 0) {
-                        minMap.put(inferredType, value);
-                    }
-                    if (value.compareTo(currentMax) > 0) {
-                        maxMap.put(inferredType, value);
-                    }
+            }
+            return Math.min(rank, count);
+        }
+        
+        private int capacity(int level) {
+            int depth = levels.size() - 1 - level;
+            return Math.max(2, (int) Math.ceil(K * Math.pow(2.0 / 3.0, depth)));
+        }
+        
+        private void addLevel() {
+            levels.add(new double[2]);
+            sizes.add(0);
+        }
+        
+        private void append(int level, double value) {
+            double[] values = levels.get(level);
+            int size = sizes.get(level);
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                levels.set(level, values);
+            }
+            values[size] = value;
+            sizes.set(level, size + 1);
+        }
+        
+        /**
+         * Compacts every level at or above its capacity, from the bottom up.
+         */
+        private void compress() {
+            for (int level = 0; level < levels.size(); level++) {
+                int size = sizes.get(level);
+                if (size < capacity(level)) {
+                    continue;
                 }
-                break;
-                
-            case "string":
-                // For strings, compare lexicographically
-                if (!minMap.containsKey(inferredType)) {
-                    minMap.put(inferredType, value);
-                    maxMap.put(inferredType, value);
-                } else {
-                    String currentMin = minMap.get(inferredType);
-                    String currentMax = maxMap.get(inferredType);
-                    if (value.compareTo(currentMin) < 0) {
-                        minMap.put(inferredType, value);
-                    }
-                    if (value.compareTo(currentMax) > 0) {
-                        maxMap.put(inferredType, value);
-                    }
+                if (level + 1 == levels.size()) {
+                    addLevel();
                 }
-                break;
-                
-            case "boolean":
-                // For boolean, min is false, max is true
-                if (!minMap.containsKey(inferredType)) {
-                    minMap.put(inferredType, value);
-                    maxMap.put(inferredType, value);
-                } else {
-                    if (value.equalsIgnoreCase("false")) {
-                        minMap.put(inferredType, value);
-                    }
-                    if (value.equalsIgnoreCase("true")) {
-                        maxMap.put(inferredType, value);
-                    }
+                double[] values = levels.get(level);
+                Arrays.sort(values, 0, size);
+                // An odd value out stays behind so that the promoted pairs keep the total weight
+                int pairs = size / 2;
+                int start = size % 2;
+                int offset = promoteOdd ? 1 : 0;
+                promoteOdd = !promoteOdd;
+                for (int i = 0; i < pairs; i++) {
+                    append(level + 1, values[start + 2 * i + offset]);
                 }
-                break;
+                sizes.set(level, start);
+            }
         }
     }
     
-    
-    private static String getValueAsString(JsonElement element) {
-        if (element.isJsonNull()) {
-            return "null";
-        } else if (element.isJsonPrimitive()) {
-            return element.getAsString();
-        } else if (element.isJsonArray()) {
-            return element.toString();
-        } else if (element.isJsonObject()) {
-            return element.toString();
+    /**
+     * Folds the properties of source into target. Properties new to target are
+     * appended after the existing ones, so merging maps in input order gives the
+     * same property order as analyzing the inputs one after another. The source
+     * map is consumed: its PropertyInfo objects may be moved into target.
+     */
+    private static void mergePropertyMaps(Map<String, PropertyInfo> target, Map<String, PropertyInfo> source) {
+        for (Map.Entry<String, PropertyInfo> entry : source.entrySet()) {
+            PropertyInfo info = target.get(entry.getKey());
+            if (info == null) {
+                target.put(entry.getKey(), entry.getValue());
+            } else {
+                mergePropertyInfo(info, entry.getValue());
+            }
         }
-        return element.toString();
     }
     
-    private static String inferDataType(String value) {
-        if (value == null || value.isEmpty()) {
-            return "string";
+    private static void mergePropertyInfo(PropertyInfo target, PropertyInfo source) {
+        target.count += source.count;
+        target.distinctFloor = Math.max(target.distinctFloor, source.distinctFloor);
+        target.hasValueList |= source.hasValueList;
+        if (target.inferenceCache == null) {
+            target.inferenceCache = source.inferenceCache;
+        } else if (source.inferenceCache != null) {
+            target.inferenceCache.lookups += source.inferenceCache.lookups;
+            target.inferenceCache.hits += source.inferenceCache.hits;
         }
         
-        // Check for GUID/UUID (with or without hyphens, case-insensitive)
-        // Standard format: xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx
-        // Compact format: xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx
-        if (value.matches("(?i)[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}")) {
-            return "guid";
+        for (Map.Entry<String, Object> example : source.typeExamples.entrySet()) {
+            if (!target.typeExamples.containsKey(example.getKey())) {
+                target.typeExamples.put(example.getKey(), example.getValue());
+            }
         }
-        if (value.matches("(?i)[0-9a-f]{32}")) {
-            return "guid";
+        for (Map.Entry<String, Long> typeCount : source.typeCounts.entrySet()) {
+            target.typeCounts.put(typeCount.getKey(), target.typeCounts.getOrDefault(typeCount.getKey(), 0L) + typeCount.getValue());
         }
         
-        // Check for boolean
-        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
-            return "boolean";
+        if (target.offHeap == null) {
+            target.offHeap = source.offHeap;
         }
-        
-        // Check for integer
-        if (value.matches("-?\\d+")) {
-            return "integer";
+        if (target.distinctSketch != null || source.distinctSketch != null) {
+            // Take over or fold into a sketch; exact values are replayed into it
+            if (target.distinctSketch == null) {
+                HyperLogLog sketch = source.distinctSketch;
+                for (String value : target.distinctValues) {
+                    sketch.add(value);
+                }
+                releaseDistinctValues(target.distinctValues);
+                target.distinctSketch = sketch;
+                target.distinctValues = null;
+            } else if (source.distinctSketch != null) {
+                target.distinctSketch.merge(source.distinctSketch);
+            } else {
+                for (String value : source.distinctValues) {
+                    target.distinctSketch.add(value);
+                }
+                releaseDistinctValues(source.distinctValues);
+            }
+        } else if (source.distinctValues.size() > target.distinctValues.size()) {
+            // Union into the larger set; the source set is not used after merging
+            Set<String> smaller = target.distinctValues;
+            target.distinctValues = source.distinctValues;
+            target.distinctValues.addAll(smaller);
+            releaseDistinctValues(smaller);
+            target.sketchIfLarge();
+            target.moveOffHeapIfLarge();
+        } else {
+            target.distinctValues.addAll(source.distinctValues);
+            releaseDistinctValues(source.distinctValues);
+            target.sketchIfLarge();
+            target.moveOffHeapIfLarge();
         }
         
-        // Check for floating point
-        if (value.matches("-?\\d*\\.\\d+([eE][+-]?\\d+)?") || value.matches("-?\\d+\\.\\d*([eE][+-]?\\d+)?")) {
-            return "float";
+        for (Map.Entry<String, Set<String>> inferred : source.inferredTypesSet.entrySet()) {
+            if (!target.inferredTypesSet.containsKey(inferred.getKey())) {
+                target.inferredTypesSet.put(inferred.getKey(), new LinkedHashSet<>());
+            }
+            target.inferredTypesSet.get(inferred.getKey()).addAll(inferred.getValue());
         }
-        
-        // Check for date formats (ISO 8601 and common formats)
-        // DateTime: YYYY-MM-DDTHH:MM:SS or YYYY-MM-DD HH:MM:SS
-        if (value.matches("\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}:\\d{2}(\\.\\d+)?(Z|[+-]\\d{2}:\\d{2})?")) {
-            return "datetime";
+        for (Map.Entry<String, Map<String, Long>> inferred : source.inferredTypeCounts.entrySet()) {
+            if (!target.inferredTypeCounts.containsKey(inferred.getKey())) {
+                target.inferredTypeCounts.put(inferred.getKey(), new LinkedHashMap<>());
+            }
+            Map<String, Long> counts = target.inferredTypeCounts.get(inferred.getKey());
+            for (Map.Entry<String, Long> count : inferred.getValue().entrySet()) {
+                counts.put(count.getKey(), counts.getOrDefault(count.getKey(), 0L) + count.getValue());
+            }
         }
         
-        // Date: YYYY-MM-DD
-        if (value.matches("\\d{4}-\\d{2}-\\d{2}")) {
-            return "date";
+        for (Map.Entry<String, Map<String, ValueRange>> typeRanges : source.ranges.entrySet()) {
+            Map<String, ValueRange> targetRanges = target.ranges.computeIfAbsent(typeRanges.getKey(), k -> new LinkedHashMap<>());
+            for (Map.Entry<String, ValueRange> range : typeRanges.getValue().entrySet()) {
+                targetRanges.computeIfAbsent(range.getKey(), ApiDumper::createValueRange).merge(range.getValue());
+            }
         }
         
-        // Date: MM/DD/YYYY or DD/MM/YYYY
-        if (value.matches("\\d{1,2}/\\d{1,2}/\\d{4}")) {
-            return "date";
+        if (target.topValues == null) {
+            target.topValues = source.topValues;
+        } else if (source.topValues != null) {
+            target.topValues.merge(source.topValues);
         }
         
-        // Time: HH:MM:SS or HH:MM
-        if (value.matches("\\d{2}:\\d{2}(:\\d{2})?")) {
-            return "time";
+        if (target.quantiles == null) {
+            target.quantiles = source.quantiles;
+        } else if (source.quantiles != null) {
+            for (Map.Entry<String, QuantileSketch> sketch : source.quantiles.entrySet()) {
+                QuantileSketch targetSketch = target.quantiles.get(sketch.getKey());
+                if (targetSketch == null) {
+                    target.quantiles.put(sketch.getKey(), sketch.getValue());
+                } else {
+                    targetSketch.merge(sketch.getValue());
+                }
+            }
         }
-        
-        // Default to string
-        return "string";
-    }
-    
-    private static class PropertyInfo {
-        int count = 0;
-        Map<String, Object> typeExamples = new LinkedHashMap<>();
-        Map<String, Integer> typeCounts = new LinkedHashMap<>();
-        Set<String> distinctValues = new HashSet<>();
-        Map<String, Set<String>> inferredTypesSet = new LinkedHashMap<>();
-        Map<String, Map<String, Integer>> inferredTypeCounts = new LinkedHashMap<>();
-        Map<String, Map<String, String>> minValues = new LinkedHashMap<>();
-        Map<String, Map<String, String>> maxValues = new LinkedHashMap<>();
     }
     
     // Methods for JSON generation from schema
@@ -1623,24 +6633,43 @@ public class ApiDumper {
     
     public static class SchemaProperty {
         public String property;
-        public int count;
-        public int distinctValues;
+        public long count;
+        public long distinctValues;
+        public Boolean distinctValuesEstimated;
+        public Long sampleSize;
+        public Long countLower;
+        public Long countUpper;
         public List<String> distinctValuesArray;
+        public List<TopValueInfo> topValues;
         public List<DataTypeInfo> dataTypes;
     }
     
+    public static class TopValueInfo {
+        public String value;
+        public long count;
+        public Long error;
+    }
+    
     public static class DataTypeInfo {
         public String type;
-        public int count;
+        public long count;
         public Object example;
         public List<InferredTypeInfo> inferredTypes;
         public Map<String, String> minValues;
         public Map<String, String> maxValues;
+        public Map<String, Map<String, String>> quantiles;
+        public Map<String, List<HistogramBucket>> histograms;
+    }
+    
+    public static class HistogramBucket {
+        public String lower;
+        public String upper;
+        public long count;
     }
     
     public static class InferredTypeInfo {
         public String type;
-        public int count;
+        public long count;
     }
     
     public static class RuleConfig {
@@ -122,7 +122,7 @@ public class ApiDumperTest {
         String dumpDistinctValues = null;
         
         // Act
-        String result = invokeGenerateSchemaReportJson(jsonResponse, dumpDistinctValues);
+        String result = generateSchemaReportJson(jsonResponse, analysisOptions(dumpDistinctValues));
         
         // Assert
         assertNull("Result should be null for empty response", result);
@@ -131,11 +131,12 @@ public class ApiDumperTest {
     @Test
     public void testGenerateSchemaReportJson_NullResponse() throws Exception {
         // Arrange
-        String jsonResponse = null;
-        String dumpDistinctValues = null;
+        Class<?> optionsClass = Class.forName("com.example.apidumper.ApiDumper$AnalysisOptions");
+        Method method = ApiDumper.class.getDeclaredMethod("analyzeJsonStream", java.io.Reader.class, optionsClass);
+        method.setAccessible(true);
         
         // Act
-        String result = invokeGenerateSchemaReportJson(jsonResponse, dumpDistinctValues);
+        Object result = method.invoke(null, null, analysisOptions(null));
         
         // Assert
         assertNull("Result should be null for null response", result);
@@ -148,7 +149,7 @@ public class ApiDumperTest {
         String dumpDistinctValues = null;
         
         // Act
-        String result = invokeGenerateSchemaReportJson(jsonResponse, dumpDistinctValues);
+        String result = generateSchemaReportJson(jsonResponse, analysisOptions(dumpDistinctValues));
         
         // Assert
         assertNull("Result should be null for invalid JSON", result);
@@ -913,12 +914,208 @@ public class ApiDumperTest {
     }
 
     /**
-     * Helper method to invoke the private generateSchemaReportJson method using reflection.
+     * Helper method to generate a schema report with the streaming analyzer using reflection,
+     * checking that analyzing the parsed tree produces the same report.
      */
     private String invokeGenerateSchemaReportJson(String jsonResponse, String dumpDistinctValues) throws Exception {
-        Method method = ApiDumper.class.getDeclaredMethod("generateSchemaReportJson", String.class, String.class);
-        method.setAccessible(true);
-        return (String) method.invoke(null, jsonResponse, dumpDistinctValues);
+        String report = generateSchemaReportJson(jsonResponse, analysisOptions(dumpDistinctValues));
+        assertEquals("Tree analysis should produce the streaming report", 
+                     report, generateTreeSchemaReportJson(jsonResponse, analysisOptions(dumpDistinctValues)));
+        return report;
+    }
+
+    /**
+     * Helper method to build analysis options for --dumpDistinctValues, then set AnalysisOptions
+     * fields from name/value pairs, e.g. analysisOptions(null, "threads", 4, "quantiles", true).
+     */
+    private Object analysisOptions(String dumpDistinctValues, Object... fieldValues) throws Exception {
+        Method parseOptions = ApiDumper.class.getDeclaredMethod("parseAnalysisOptions", String.class);
+        parseOptions.setAccessible(true);
+        Object options = parseOptions.invoke(null, dumpDistinctValues);
+        for (int i = 0; i < fieldValues.length; i += 2) {
+            java.lang.reflect.Field field = options.getClass().getDeclaredField((String) fieldValues[i]);
+            field.setAccessible(true);
+            field.set(options, fieldValues[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * Helper method to create the private PathFilter for --includePaths/--excludePaths.
+     */
+    private Object pathFilter(String includePaths, String excludePaths) throws Exception {
+        Class<?> filterClass = Class.forName("com.example.apidumper.ApiDumper$PathFilter");
+        java.lang.reflect.Constructor<?> filterConstructor = filterClass.getDeclaredConstructor(String.class, String.class);
+        filterConstructor.setAccessible(true);
+        return filterConstructor.newInstance(includePaths, excludePaths);
+    }
+
+    /**
+     * Helper method to stream a JSON document through the private analyzer with the given options
+     * and build its report. Returns null if the analyzer rejected the input.
+     */
+    private String generateSchemaReportJson(String json, Object options) throws Exception {
+        Class<?> optionsClass = Class.forName("com.example.apidumper.ApiDumper$AnalysisOptions");
+        Method analyze = ApiDumper.class.getDeclaredMethod("analyzeJsonStream", java.io.Reader.class, optionsClass);
+        analyze.setAccessible(true);
+        Object propertyMap = analyze.invoke(null, new java.io.StringReader(json), options);
+        if (propertyMap == null) {
+            return null;
+        }
+        return writeSchemaReport(propertyMap, options);
+    }
+
+    /**
+     * Helper method to analyze a parsed JSON tree with the given options and build its report.
+     */
+    private String generateTreeSchemaReportJson(String json, Object options) throws Exception {
+        Class<?> optionsClass = Class.forName("com.example.apidumper.ApiDumper$AnalysisOptions");
+        Class<?> nodeClass = Class.forName("com.example.apidumper.ApiDumper$PathNode");
+        Class<?> fingerprintClass = Class.forName("com.example.apidumper.ApiDumper$Fingerprint");
+        java.lang.reflect.Constructor<?> rootNode = nodeClass.getDeclaredConstructor(String.class);
+        rootNode.setAccessible(true);
+        java.util.Map<String, Object> propertyMap = new java.util.LinkedHashMap<>();
+        Method analyze = ApiDumper.class.getDeclaredMethod("analyzeJsonElement", com.google.gson.JsonElement.class, 
+                                                           nodeClass, java.util.Map.class, optionsClass, fingerprintClass);
+        analyze.setAccessible(true);
+        analyze.invoke(null, com.google.gson.JsonParser.parseString(json), rootNode.newInstance(""), propertyMap, options, null);
+        return writeSchemaReport(propertyMap, options);
+    }
+
+    /**
+     * Helper method to write the report of a property map through the private report writer.
+     */
+    private String writeSchemaReport(Object propertyMap, Object options) throws Exception {
+        Class<?> optionsClass = Class.forName("com.example.apidumper.ApiDumper$AnalysisOptions");
+        Method write = ApiDumper.class.getDeclaredMethod("writeSchemaReport", Map.class, optionsClass, java.io.Writer.class);
+        write.setAccessible(true);
+        java.io.StringWriter report = new java.io.StringWriter();
+        write.invoke(null, propertyMap, options, report);
+        return report.toString();
+    }
+
+    /**
+     * Helper method to analyze a JSON Lines file with the private chunked analyzer and build its report.
+     */
+    private String invokeAnalyzeJsonLinesFile(java.io.File file, String dumpDistinctValues, int threads, int chunks) throws Exception {
+        Class<?> optionsClass = Class.forName("com.example.apidumper.ApiDumper$AnalysisOptions");
+        Object options = analysisOptions(dumpDistinctValues);
+        
+        Method analyze = ApiDumper.class.getDeclaredMethod("analyzeJsonLinesFile", 
+            java.io.File.class, optionsClass, int.class, int.class);
+        analyze.setAccessible(true);
+        Object propertyMap = analyze.invoke(null, file, options, threads, chunks);
+        if (propertyMap == null) {
+            return null;
+        }
+        
+        return writeSchemaReport(propertyMap, options);
+    }
+
+    /**
+     * Helper method to start a local HTTP server that answers every request with the given JSON body.
+     */
+    private com.sun.net.httpserver.HttpServer startJsonServer(String body) throws Exception {
+        final byte[] bytes = body.getBytes("UTF-8");
+        com.sun.net.httpserver.HttpServer server = com.sun.net.httpserver.HttpServer.create(
+            new java.net.InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (java.io.OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Helper method to start a local HTTP server serving numbered pages of two records each.
+     * Pages after the last one are empty and carry no next link.
+     */
+    private com.sun.net.httpserver.HttpServer startPagedServer(final int lastPage) throws Exception {
+        com.sun.net.httpserver.HttpServer server = com.sun.net.httpserver.HttpServer.create(
+            new java.net.InetSocketAddress("localhost", 0), 0);
+        server.createContext("/items", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            int page = query != null && query.startsWith("page=") ? Integer.parseInt(query.substring(5)) : 1;
+            String data = page <= lastPage 
+                ? "{\"id\": " + (page * 2 - 1) + ", \"name\": \"item\"}, {\"id\": " + (page * 2) + ", \"name\": \"item\"}" 
+                : "";
+            String next = page < lastPage ? "\"/items?page=" + (page + 1) + "\"" : "null";
+            byte[] bytes = ("{\"data\": [" + data + "], \"links\": {\"next\": " + next + "}}").getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (java.io.OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Helper method to run the command line entry point and capture what it prints.
+     */
+    private String runMainCapturingOutput(String[] args) throws Exception {
+        java.io.ByteArrayOutputStream outputStream = new java.io.ByteArrayOutputStream();
+        java.io.PrintStream originalOut = System.out;
+        System.setOut(new java.io.PrintStream(outputStream, true, "UTF-8"));
+        try {
+            ApiDumper.main(args);
+        } finally {
+            System.setOut(originalOut);
+        }
+        return outputStream.toString("UTF-8");
+    }
+
+    /**
+     * Helper method to write a gzip-compressed copy of a file to a temporary file.
+     */
+    private java.io.File gzipToTempFile(java.io.File source, String suffix) throws Exception {
+        java.io.File target = java.io.File.createTempFile("compressed", suffix);
+        target.deleteOnExit();
+        try (java.io.OutputStream out = new java.util.zip.GZIPOutputStream(new java.io.FileOutputStream(target))) {
+            java.nio.file.Files.copy(source.toPath(), out);
+        }
+        return target;
+    }
+
+    /**
+     * Helper method to read the lookup and hit counters of a property's type inference cache.
+     */
+    private long[] getInferenceCacheCounters(Object propertyInfo) throws Exception {
+        java.lang.reflect.Field cacheField = propertyInfo.getClass().getDeclaredField("inferenceCache");
+        cacheField.setAccessible(true);
+        Object cache = cacheField.get(propertyInfo);
+        java.lang.reflect.Field lookupsField = cache.getClass().getDeclaredField("lookups");
+        lookupsField.setAccessible(true);
+        java.lang.reflect.Field hitsField = cache.getClass().getDeclaredField("hits");
+        hitsField.setAccessible(true);
+        return new long[] { lookupsField.getLong(cache), hitsField.getLong(cache) };
+    }
+
+    /**
+     * Helper method to append arguments to a command line.
+     */
+    private String[] concat(String[] args, String... more) {
+        String[] all = java.util.Arrays.copyOf(args, args.length + more.length);
+        System.arraycopy(more, 0, all, args.length, more.length);
+        return all;
+    }
+
+    /**
+     * Helper method to find a property in a schema report, failing if it is missing.
+     */
+    private ApiDumper.SchemaProperty findProperty(ApiDumper.SchemaReport schemaReport, String propertyName) {
+        for (ApiDumper.SchemaProperty prop : schemaReport.schemaReport) {
+            if (propertyName.equals(prop.property)) {
+                return prop;
+            }
+        }
+        fail(propertyName + " property should be found");
+        return null;
     }
 
     /**
@@ -1004,8 +1201,9 @@ public class ApiDumperTest {
         
         try {
             // Act - Use reflection to call the private processJsonFile method
+            Class<?> optionsClass = Class.forName("com.example.apidumper.ApiDumper$AnalysisOptions");
             Method processJsonFileMethod = ApiDumper.class.getDeclaredMethod("processJsonFile", 
-                String.class, boolean.class, boolean.class, String.class, String.class);
+                String.class, boolean.class, boolean.class, optionsClass, String.class);
             processJsonFileMethod.setAccessible(true);
             
             // Capture output
@@ -1015,7 +1213,8 @@ public class ApiDumperTest {
             
             try {
                 // Call processJsonFile with schema report generation enabled
-                processJsonFileMethod.invoke(null, testJsonFile, true, true, dumpDistinctValues, reportFilePath);
+                processJsonFileMethod.invoke(null, testJsonFile, true, true, 
+                                             analysisOptions(dumpDistinctValues), reportFilePath);
                 String output = outputStream.toString();
                 
                 // Assert
@@ -1084,6 +1283,1226 @@ public class ApiDumperTest {
         }
     }
 
+    @Test
+    public void testGenerateSchemaReportJson_streamingMatchesTreeAnalysis() throws Exception {
+        // Arrange - nested objects, arrays of arrays, nulls and mixed types
+        String jsonResponse = "{\"items\": [{\"id\": 1, \"tags\": [\"a\", \"b\"], \"meta\": {\"k\": null}}, " +
+                             "{\"id\": 2.5, \"tags\": [\"a\", \"b\"], \"meta\": {\"k\": \"2020-01-01\"}}, " +
+                             "{\"id\": \"x\", \"tags\": [[1], [2]], \"meta\": null}], \"ok\": true}";
+        String dumpDistinctValues = "items.tags,items.id";
+        
+        // Act
+        String treeResult = generateTreeSchemaReportJson(jsonResponse, analysisOptions(dumpDistinctValues));
+        String streamResult = generateSchemaReportJson(jsonResponse, analysisOptions(dumpDistinctValues));
+        
+        // Assert
+        assertNotNull("Tree result should not be null", treeResult);
+        assertEquals("Streaming analysis should produce the same report", treeResult, streamResult);
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_streamingMatchesTreeAnalysisForResourceFiles() throws Exception {
+        String[] files = { "test-file.json", "test-data.json", "sample-schema.json", "sample-schema-with-arrays.json",
+                           "simple-array-test.json", "test-array-issue.json" };
+        for (String file : files) {
+            String content = readFileContent(new java.io.File("src/test/resources/" + file));
+            assertEquals("Streaming report should match for " + file,
+                         generateTreeSchemaReportJson(content, analysisOptions("schemaReport,users")),
+                         generateSchemaReportJson(content, analysisOptions("schemaReport,users")));
+        }
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_streamingEmptyAndInvalidInput() throws Exception {
+        assertNull("Result should be null for empty input", generateSchemaReportJson("   ", analysisOptions(null)));
+        assertNull("Result should be null for invalid JSON", generateSchemaReportJson("invalid json {", analysisOptions(null)));
+    }
+
+    @Test
+    public void testAnalyzeJsonLinesFile_parallelChunksMatchSequentialArray() throws Exception {
+        // Arrange - the same records analyzed as one JSON array are the reference
+        java.io.File ndjson = new java.io.File("src/test/resources/test-records.ndjson");
+        StringBuilder array = new StringBuilder("[");
+        for (String line : readFileContent(ndjson).split("\n")) {
+            if (!line.trim().isEmpty()) {
+                array.append(array.length() > 1 ? "," : "").append(line);
+            }
+        }
+        array.append("]");
+        String expected = generateSchemaReportJson(array.toString(), analysisOptions("name,tags"));
+        
+        // Act & Assert - every chunking must merge back into the same report
+        for (int chunks : new int[] { 1, 2, 3, 7, 50 }) {
+            String result = invokeAnalyzeJsonLinesFile(ndjson, "name,tags", 4, chunks);
+            assertEquals("JSON Lines report should match with " + chunks + " chunks", expected, result);
+        }
+    }
+
+    @Test
+    public void testAnalyzeJsonLinesFile_invalidRecordReturnsNull() throws Exception {
+        java.io.File ndjson = java.io.File.createTempFile("invalid-records", ".ndjson");
+        ndjson.deleteOnExit();
+        try (java.io.PrintWriter writer = new java.io.PrintWriter(ndjson)) {
+            for (int i = 1; i <= 6; i++) {
+                writer.println("{\"id\": " + i + "}");
+            }
+            writer.println("{\"id\": ");
+            writer.println("{\"id\": 8}");
+        }
+        java.io.File gzipped = gzipToTempFile(ndjson, ".ndjson.gz");
+        
+        java.io.ByteArrayOutputStream errors = new java.io.ByteArrayOutputStream();
+        java.io.PrintStream originalErr = System.err;
+        System.setErr(new java.io.PrintStream(errors, true, "UTF-8"));
+        try {
+            assertNull("Invalid record should fail the analysis", invokeAnalyzeJsonLinesFile(ndjson, null, 2, 3));
+            assertTrue("Chunked analysis should report the line in the file", 
+                       errors.toString("UTF-8").contains("Invalid record on line 7:"));
+            errors.reset();
+            assertNull("Invalid compressed record should fail the analysis", invokeAnalyzeJsonLinesFile(gzipped, null, 2, 3));
+            assertTrue("Compressed analysis should report the same line", 
+                       errors.toString("UTF-8").contains("Invalid record on line 7:"));
+        } finally {
+            System.setErr(originalErr);
+        }
+        ndjson.delete();
+        gzipped.delete();
+    }
+
+    @Test
+    public void testCallApiAndOutputResponse_streamsBodyToConsoleAndAnalyzer() throws Exception {
+        // Arrange - serve a JSON body from a local HTTP server
+        String body = readFileContent(new java.io.File("src/test/resources/test-file.json"));
+        com.sun.net.httpserver.HttpServer server = startJsonServer(body);
+        java.io.File reportFile = java.io.File.createTempFile("schema-report", ".json");
+        reportFile.deleteOnExit();
+        
+        java.io.ByteArrayOutputStream outputStream = new java.io.ByteArrayOutputStream();
+        java.io.PrintStream originalOut = System.out;
+        System.setOut(new java.io.PrintStream(outputStream, true, "UTF-8"));
+        try {
+            // Act
+            Class<?> optionsClass = Class.forName("com.example.apidumper.ApiDumper$AnalysisOptions");
+            Method method = ApiDumper.class.getDeclaredMethod("callApiAndOutputResponse", 
+                String.class, boolean.class, boolean.class, optionsClass, String.class, String.class);
+            method.setAccessible(true);
+            method.invoke(null, "http://localhost:" + server.getAddress().getPort() + "/data", true, false, 
+                          analysisOptions("users.name"), reportFile.getAbsolutePath(), null);
+        } finally {
+            System.setOut(originalOut);
+            server.stop(0);
+        }
+        
+        // Assert - the whole body is printed and the report matches the in-memory analysis
+        String output = outputStream.toString("UTF-8");
+        assertTrue("Output should contain the response body", output.contains(body));
+        assertTrue("Output should confirm the report file", output.contains("Schema report written to: "));
+        assertEquals("Streamed report should match the in-memory report",
+                     invokeGenerateSchemaReportJson(body, "users.name"), readFileContent(reportFile));
+        reportFile.delete();
+    }
+
+    @Test
+    public void testProcessUrlBatch_writesPerUrlAndCombinedReports() throws Exception {
+        // Arrange - three URLs served by the same local server, and one that fails with a JSON error body
+        String body = readFileContent(new java.io.File("src/test/resources/test-file.json"));
+        com.sun.net.httpserver.HttpServer server = startJsonServer(body);
+        server.createContext("/missing", exchange -> {
+            byte[] error = "{\"error\": \"not found\", \"code\": 404}".getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(404, error.length);
+            try (java.io.OutputStream out = exchange.getResponseBody()) {
+                out.write(error);
+            }
+        });
+        String base = "http://localhost:" + server.getAddress().getPort();
+        
+        java.io.File urlFile = java.io.File.createTempFile("urls", ".txt");
+        urlFile.deleteOnExit();
+        try (java.io.PrintWriter writer = new java.io.PrintWriter(urlFile)) {
+            writer.println("# endpoints to profile");
+            writer.println(base + "/first");
+            writer.println();
+            writer.println(base + "/second?page=2");
+            writer.println(base + "/missing");
+            writer.println(base + "/third");
+        }
+        java.nio.file.Path reportDir = java.nio.file.Files.createTempDirectory("reports");
+        java.io.File combinedFile = new java.io.File(reportDir.toFile(), "combined.json");
+        
+        String output;
+        try {
+            // Act
+            output = runMainCapturingOutput(new String[] { "--urlFile", urlFile.getAbsolutePath(), "--reportDir", reportDir.toString(), 
+                "--combinedReport", combinedFile.getPath(), "--threads", "3", "--maxConnectionsPerHost", "2" });
+        } finally {
+            server.stop(0);
+        }
+        
+        // Assert - one report per successful URL plus the combined report
+        assertTrue("The error response should be listed", output.contains("/missing -> 404 Not Found (not analyzed)"));
+        assertTrue(output.contains("Combined report for 3 of 4 APIs:"));
+        java.io.File[] reports = reportDir.toFile().listFiles();
+        assertNotNull("Report directory should be readable", reports);
+        assertEquals("Should write three per-URL reports and one combined report", 4, reports.length);
+        assertTrue("Per-URL reports should be numbered in file order", 
+                   new java.io.File(reportDir.toFile(), "0002-localhost_" + server.getAddress().getPort() 
+                                    + "_second_page_2.json").exists());
+        
+        com.google.gson.Gson gson = new com.google.gson.Gson();
+        ApiDumper.SchemaReport combined = gson.fromJson(readFileContent(combinedFile), ApiDumper.SchemaReport.class);
+        verifySchemaProperty(combined, "users", "array", 3);
+        verifySchemaProperty(combined, "users.name", "string", 6);
+        verifySchemaProperty(combined, "status", "string", 3);
+        for (ApiDumper.SchemaProperty property : combined.schemaReport) {
+            assertFalse("Error payloads should not be merged", property.property.equals("error"));
+        }
+        
+        for (java.io.File report : reports) {
+            report.delete();
+        }
+        reportDir.toFile().delete();
+    }
+
+    @Test
+    public void testCrawlPaginatedApi_followsNextLinksIntoOneReport() throws Exception {
+        // Arrange - three pages linked by a relative "next" URL, the last one with a null link
+        com.sun.net.httpserver.HttpServer server = startPagedServer(3);
+        java.io.File reportFile = java.io.File.createTempFile("crawl-report", ".json");
+        reportFile.deleteOnExit();
+        
+        // Act
+        String output = runMainCapturingOutput(new String[] { "--url", 
+            "http://localhost:" + server.getAddress().getPort() + "/items", 
+            "--nextLinkPath", "links.next", "--reportFile", reportFile.getAbsolutePath() });
+        server.stop(0);
+        
+        // Assert - all pages were visited and folded into one report
+        assertTrue("Output should list the third page", output.contains("Page 3: "));
+        assertTrue("Output should report the page count", output.contains("Crawled 3 page(s)"));
+        com.google.gson.Gson gson = new com.google.gson.Gson();
+        ApiDumper.SchemaReport schemaReport = gson.fromJson(readFileContent(reportFile), ApiDumper.SchemaReport.class);
+        verifySchemaProperty(schemaReport, "data", "array", 3);
+        verifySchemaProperty(schemaReport, "data.id", "number", 6);
+        verifyNumericPropertyMinMax(schemaReport, "data.id", "1", "6");
+        reportFile.delete();
+    }
+
+    @Test
+    public void testCrawlPaginatedApi_pageParameterStopsAtEmptyPage() throws Exception {
+        // Arrange - pages 1 and 2 hold data, page 3 is empty
+        com.sun.net.httpserver.HttpServer server = startPagedServer(2);
+        java.io.File reportFile = java.io.File.createTempFile("crawl-report", ".json");
+        reportFile.deleteOnExit();
+        
+        // Act
+        String output = runMainCapturingOutput(new String[] { "--url", 
+            "http://localhost:" + server.getAddress().getPort() + "/items", 
+            "--pageParam", "page", "--reportFile", reportFile.getAbsolutePath() });
+        server.stop(0);
+        
+        // Assert
+        assertTrue("Output should report the page count", output.contains("Crawled 3 page(s)"));
+        com.google.gson.Gson gson = new com.google.gson.Gson();
+        ApiDumper.SchemaReport schemaReport = gson.fromJson(readFileContent(reportFile), ApiDumper.SchemaReport.class);
+        verifySchemaProperty(schemaReport, "data.id", "number", 4);
+        verifyNumericPropertyMinMax(schemaReport, "data.id", "1", "4");
+        reportFile.delete();
+    }
+
+    @Test
+    public void testProcessJsonFile_gzipInputMatchesUncompressed() throws Exception {
+        // Arrange
+        java.io.File source = new java.io.File("src/test/resources/test-file.json");
+        java.io.File gzipped = gzipToTempFile(source, ".json.gz");
+        java.io.File plainReport = java.io.File.createTempFile("plain-report", ".json");
+        java.io.File gzipReport = java.io.File.createTempFile("gzip-report", ".json");
+        plainReport.deleteOnExit();
+        gzipReport.deleteOnExit();
+        
+        // Act
+        runMainCapturingOutput(new String[] { "--jsonFile", source.getPath(), "-s", "-n", "-f", plainReport.getPath() });
+        String output = runMainCapturingOutput(new String[] { "--jsonFile", gzipped.getPath(), "-s", "-f", gzipReport.getPath() });
+        
+        // Assert - the content is printed decompressed and the reports are identical
+        assertTrue("Decompressed content should be printed", output.contains("\"status\": \"success\""));
+        assertEquals("Report from gzip input should match", readFileContent(plainReport), readFileContent(gzipReport));
+        gzipped.delete();
+        plainReport.delete();
+        gzipReport.delete();
+    }
+
+    @Test
+    public void testAnalyzeJsonLinesFile_gzipInputMatchesUncompressed() throws Exception {
+        java.io.File ndjson = new java.io.File("src/test/resources/test-records.ndjson");
+        java.io.File gzipped = gzipToTempFile(ndjson, ".ndjson.gz");
+        
+        assertEquals("Compressed JSON Lines should produce the same report",
+                     invokeAnalyzeJsonLinesFile(ndjson, "name", 1, 1),
+                     invokeAnalyzeJsonLinesFile(gzipped, "name", 3, 5));
+        gzipped.delete();
+    }
+
+    @Test
+    public void testCallApiAndOutputResponse_requestsAndInflatesGzipEncoding() throws Exception {
+        // Arrange - a server that gzips its response only when the client asks for it
+        final String body = readFileContent(new java.io.File("src/test/resources/test-data.json"));
+        final String[] acceptEncoding = new String[1];
+        com.sun.net.httpserver.HttpServer server = com.sun.net.httpserver.HttpServer.create(
+            new java.net.InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            acceptEncoding[0] = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            java.io.ByteArrayOutputStream compressed = new java.io.ByteArrayOutputStream();
+            try (java.util.zip.GZIPOutputStream gzip = new java.util.zip.GZIPOutputStream(compressed)) {
+                gzip.write(body.getBytes("UTF-8"));
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressed.size());
+            try (java.io.OutputStream out = exchange.getResponseBody()) {
+                compressed.writeTo(out);
+            }
+        });
+        server.start();
+        java.io.File reportFile = java.io.File.createTempFile("gzip-api-report", ".json");
+        reportFile.deleteOnExit();
+        
+        // Act
+        String output = runMainCapturingOutput(new String[] { "--url", 
+            "http://localhost:" + server.getAddress().getPort() + "/", "-s", "-f", reportFile.getPath() });
+        server.stop(0);
+        
+        // Assert
+        assertNotNull("Client should send Accept-Encoding", acceptEncoding[0]);
+        assertTrue("Client should accept gzip", acceptEncoding[0].contains("gzip"));
+        assertTrue("Inflated body should be printed", output.contains(body));
+        assertEquals("Report should match the uncompressed analysis",
+                     invokeGenerateSchemaReportJson(body, null), readFileContent(reportFile));
+        reportFile.delete();
+    }
+
+    @Test
+    public void testProcessJsonFileSet_directoryAndGlobMatchSequentialAnalysis() throws Exception {
+        // Arrange - a directory of captures, one of them compressed, plus a file the glob must skip
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("captures");
+        String[] sources = { "test-file.json", "test-data.json", "simple-array-test.json" };
+        StringBuilder allDocuments = new StringBuilder("[");
+        for (int i = 0; i < sources.length; i++) {
+            java.io.File source = new java.io.File("src/test/resources/" + sources[i]);
+            java.nio.file.Files.copy(source.toPath(), dir.resolve("capture-" + i + ".json"));
+            allDocuments.append(i > 0 ? "," : "").append(readFileContent(source));
+        }
+        allDocuments.append("]");
+        java.nio.file.Files.write(dir.resolve("notes.txt"), "not json".getBytes("UTF-8"));
+        java.io.File reportFile = java.io.File.createTempFile("fileset-report", ".json");
+        reportFile.deleteOnExit();
+        
+        // The documents of a root array are analyzed exactly like a sequence of files
+        String expected = generateSchemaReportJson(allDocuments.toString(), analysisOptions("users.name"));
+        
+        // Act & Assert - glob input
+        String output = runMainCapturingOutput(new String[] { "--jsonFile", dir.toString() + "/*.json", 
+            "-s", "-d", "users.name", "-f", reportFile.getPath(), "--threads", "3" });
+        assertTrue("Output should report the matched files", output.contains("Found 3 file(s)"));
+        assertEquals("Glob report should match sequential analysis", expected, readFileContent(reportFile));
+        
+        // Act & Assert - directory input with a compressed capture
+        java.io.File compressed = gzipToTempFile(dir.resolve("capture-2.json").toFile(), ".json.gz");
+        java.nio.file.Files.move(compressed.toPath(), dir.resolve("capture-2.json"), 
+                                 java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        java.nio.file.Files.delete(dir.resolve("notes.txt"));
+        runMainCapturingOutput(new String[] { "--jsonFile", dir.toString(), 
+            "-s", "-d", "users.name", "-f", reportFile.getPath() });
+        assertEquals("Directory report should match sequential analysis", expected, readFileContent(reportFile));
+        
+        for (java.io.File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        dir.toFile().delete();
+        reportFile.delete();
+    }
+
+    @Test
+    public void testProcessJsonFileSet_checkpointFoldsInOnlyNewFiles() throws Exception {
+        // Arrange - an archive that grows by one capture between runs
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("archive");
+        String[] sources = { "test-file.json", "test-data.json", "simple-array-test.json" };
+        java.io.File checkpoint = dir.resolve("state.ckpt").toFile();
+        java.io.File reportFile = java.io.File.createTempFile("checkpoint-report", ".json");
+        java.io.File fullReportFile = java.io.File.createTempFile("full-report", ".json");
+        reportFile.deleteOnExit();
+        fullReportFile.deleteOnExit();
+        String[] options = { "-s", "-d", "users.name", "--topValues", "5", "--quantiles", "--approximateDistinct", "8" };
+        
+        // Act - the first run sees two captures, the second run one more
+        String firstOutput = "";
+        String secondOutput = "";
+        for (int i = 0; i < sources.length; i++) {
+            java.nio.file.Files.copy(new java.io.File("src/test/resources/" + sources[i]).toPath(), 
+                                     dir.resolve("capture-" + i + ".json"));
+            if (i == 1 || i == 2) {
+                java.util.List<String> args = new java.util.ArrayList<>(java.util.Arrays.asList(
+                    "--jsonFile", dir.toString(), "--checkpoint", checkpoint.getPath(), "-f", reportFile.getPath()));
+                args.addAll(java.util.Arrays.asList(options));
+                String output = runMainCapturingOutput(args.toArray(new String[0]));
+                if (i == 1) {
+                    firstOutput = output;
+                } else {
+                    secondOutput = output;
+                }
+            }
+        }
+        java.util.List<String> fullArgs = new java.util.ArrayList<>(java.util.Arrays.asList(
+            "--jsonFile", dir.toString() + "/*.json", "-f", fullReportFile.getPath()));
+        fullArgs.addAll(java.util.Arrays.asList(options));
+        runMainCapturingOutput(fullArgs.toArray(new String[0]));
+        
+        // Assert
+        assertTrue("First run should analyze both files", firstOutput.contains("0 file(s) already analyzed"));
+        assertTrue("Checkpoint should be written", checkpoint.isFile());
+        assertTrue("Second run should only analyze the new file", secondOutput.contains("2 file(s) already analyzed"));
+        assertTrue("Second run should only analyze the new file", secondOutput.contains(", 1 new"));
+        assertEquals("Checkpointed report should match a full run", 
+            readFileContent(fullReportFile), readFileContent(reportFile));
+        
+        // A changed file invalidates the checkpoint, since its old contribution cannot be removed
+        java.nio.file.Files.write(dir.resolve("capture-0.json"), "{\"replaced\": true}".getBytes("UTF-8"));
+        java.util.List<String> thirdArgs = new java.util.ArrayList<>(java.util.Arrays.asList(
+            "--jsonFile", dir.toString(), "--checkpoint", checkpoint.getPath(), "-f", reportFile.getPath()));
+        thirdArgs.addAll(java.util.Arrays.asList(options));
+        String thirdOutput = runMainCapturingOutput(thirdArgs.toArray(new String[0]));
+        assertTrue("A changed file should start a fresh state", thirdOutput.contains("0 file(s) already analyzed") && thirdOutput.contains(", 3 new"));
+        assertTrue("The fresh state should include the replaced capture", readFileContent(reportFile).contains("\"replaced\""));
+        
+        for (java.io.File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    @Test
+    public void testMergeReports_combinesReportsWithoutRawData() throws Exception {
+        // Arrange - two hosts whose values only order correctly when compared by type
+        String first = "[{\"id\": 9, \"day\": \"12/31/2023\", \"status\": \"open\", \"note\": null}, "
+            + "{\"id\": 100, \"day\": \"2024-02-01\", \"status\": \"closed\"}]";
+        String second = "[{\"id\": 10, \"day\": \"1/5/2024\", \"status\": \"open\"}, "
+            + "{\"id\": \"77\", \"day\": \"2023-06-30\", \"status\": \"pending\"}]";
+        java.io.File firstReport = java.io.File.createTempFile("host-a", ".json");
+        java.io.File secondReport = java.io.File.createTempFile("host-b", ".json");
+        java.io.File mergedReport = java.io.File.createTempFile("fleet", ".json");
+        firstReport.deleteOnExit();
+        secondReport.deleteOnExit();
+        mergedReport.deleteOnExit();
+        java.nio.file.Files.write(firstReport.toPath(), invokeGenerateSchemaReportJson(first, "status").getBytes("UTF-8"));
+        java.nio.file.Files.write(secondReport.toPath(), invokeGenerateSchemaReportJson(second, "status").getBytes("UTF-8"));
+        
+        // Act
+        String output = runMainCapturingOutput(new String[] { "--mergeReports", 
+            firstReport.getPath() + "," + secondReport.getPath(), "-f", mergedReport.getPath() });
+        
+        // Assert
+        assertTrue("Output should report the merge", output.contains("Merged 2 schema report(s)"));
+        ApiDumper.SchemaReport merged = new com.google.gson.Gson().fromJson(readFileContent(mergedReport), 
+                                                                          ApiDumper.SchemaReport.class);
+        ApiDumper.SchemaReport combined = new com.google.gson.Gson().fromJson(
+            invokeGenerateSchemaReportJson(first.substring(0, first.length() - 1) + ", " + second.substring(1), "status"),
+            ApiDumper.SchemaReport.class);
+        assertEquals("Merged properties should match analyzing all data", 
+            combined.schemaReport.size(), merged.schemaReport.size());
+        for (ApiDumper.SchemaProperty expected : combined.schemaReport) {
+            ApiDumper.SchemaProperty actual = findProperty(merged, expected.property);
+            assertEquals(expected.property + " count", expected.count, actual.count);
+            assertEquals(expected.property + " data types", expected.dataTypes.size(), actual.dataTypes.size());
+            for (int i = 0; i < expected.dataTypes.size(); i++) {
+                ApiDumper.DataTypeInfo expectedType = expected.dataTypes.get(i);
+                ApiDumper.DataTypeInfo actualType = actual.dataTypes.get(i);
+                assertEquals(expected.property + " type", expectedType.type, actualType.type);
+                assertEquals(expected.property + " type count", expectedType.count, actualType.count);
+                assertEquals(expected.property + " min values", expectedType.minValues, actualType.minValues);
+                assertEquals(expected.property + " max values", expectedType.maxValues, actualType.maxValues);
+            }
+        }
+        verifyNumericPropertyMinMax(merged, "id", "9", "100");
+        assertEquals("Listed distinct values should be unioned", 
+            java.util.Arrays.asList("closed", "open", "pending"), findProperty(merged, "status").distinctValuesArray);
+        assertEquals(3, findProperty(merged, "status").distinctValues);
+        ApiDumper.SchemaProperty day = findProperty(merged, "day");
+        assertEquals("Unlisted distinct counts should be a lower bound", 2, day.distinctValues);
+        assertEquals(Boolean.TRUE, day.distinctValuesEstimated);
+    }
+
+    @Test
+    public void testMergeReports_partialValueListsAreNotReported() throws Exception {
+        // Arrange - only one of the hosts listed the distinct values of status
+        java.io.File listedReport = java.io.File.createTempFile("listed", ".json");
+        java.io.File countedReport = java.io.File.createTempFile("counted", ".json");
+        java.io.File mergedReport = java.io.File.createTempFile("merged", ".json");
+        listedReport.deleteOnExit();
+        countedReport.deleteOnExit();
+        mergedReport.deleteOnExit();
+        java.nio.file.Files.write(listedReport.toPath(), invokeGenerateSchemaReportJson(
+            "[{\"status\": \"open\"}, {\"status\": \"closed\"}]", "status").getBytes("UTF-8"));
+        java.nio.file.Files.write(countedReport.toPath(), invokeGenerateSchemaReportJson(
+            "[{\"status\": \"pending\"}, {\"status\": \"held\"}, {\"status\": \"open\"}]", null).getBytes("UTF-8"));
+        
+        // Act
+        runMainCapturingOutput(new String[] { "--mergeReports", 
+            listedReport.getPath() + "," + countedReport.getPath(), "-f", mergedReport.getPath() });
+        
+        // Assert - the union of one list would look complete, so the count is a lower bound instead
+        ApiDumper.SchemaProperty status = findProperty(new com.google.gson.Gson().fromJson(readFileContent(mergedReport), 
+                                                                                         ApiDumper.SchemaReport.class), "status");
+        assertNull("A partial union should not be listed", status.distinctValuesArray);
+        assertEquals(3, status.distinctValues);
+        assertEquals(Boolean.TRUE, status.distinctValuesEstimated);
+    }
+
+    @Test
+    public void testMergeReports_readsCountsBeyondIntRange() throws Exception {
+        // Arrange - a very large report, with a scaled count another tool wrote as a fraction
+        java.io.File largeReport = java.io.File.createTempFile("large", ".json");
+        java.io.File smallReport = java.io.File.createTempFile("small", ".json");
+        java.io.File mergedReport = java.io.File.createTempFile("merged", ".json");
+        largeReport.deleteOnExit();
+        smallReport.deleteOnExit();
+        mergedReport.deleteOnExit();
+        java.nio.file.Files.write(largeReport.toPath(), ("{\"schemaReport\": [{\"property\": \"id\", \"count\": 3000000000, "
+            + "\"distinctValues\": 2500000000, \"dataTypes\": [{\"type\": \"number\", \"count\": 2999999999.6, "
+            + "\"example\": 1}]}]}").getBytes("UTF-8"));
+        java.nio.file.Files.write(smallReport.toPath(), invokeGenerateSchemaReportJson("[{\"id\": 2}]", null).getBytes("UTF-8"));
+        
+        // Act
+        runMainCapturingOutput(new String[] { "--mergeReports", 
+            largeReport.getPath() + "," + smallReport.getPath(), "-f", mergedReport.getPath() });
+        
+        // Assert
+        ApiDumper.SchemaProperty id = findProperty(new com.google.gson.Gson().fromJson(readFileContent(mergedReport), 
+                                                                                     ApiDumper.SchemaReport.class), "id");
+        assertEquals(3000000001L, id.count);
+        assertEquals(2500000000L, id.distinctValues);
+        assertEquals("Fractional counts should be rounded", 3000000001L, id.dataTypes.get(0).count);
+    }
+
+    @Test
+    public void testJsonLinesShards_mergePartialsMatchesSingleProcess() throws Exception {
+        // Arrange - a JSON Lines capture split into more shards than some lines are long
+        java.io.File capture = java.io.File.createTempFile("capture", ".ndjson");
+        java.io.File singleReport = java.io.File.createTempFile("single-report", ".json");
+        java.io.File mergedReport = java.io.File.createTempFile("merged-report", ".json");
+        java.nio.file.Path partialDir = java.nio.file.Files.createTempDirectory("partials");
+        capture.deleteOnExit();
+        singleReport.deleteOnExit();
+        mergedReport.deleteOnExit();
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            lines.append("{\"id\": ").append(i).append(", \"kind\": \"k").append(i % 7).append('"');
+            if (i % 5 == 0) {
+                lines.append(", \"tags\": [\"a\", ").append(i).append(']');
+            }
+            lines.append("}\n");
+        }
+        java.nio.file.Files.write(capture.toPath(), lines.toString().getBytes("UTF-8"));
+        runMainCapturingOutput(new String[] { "--jsonFile", capture.getPath(), "--jsonLines", "-s", "-n", 
+            "-d", "kind", "-f", singleReport.getPath() });
+        
+        // Act - run the workers in reverse order, then merge their partial states
+        int shards = 4;
+        for (int i = shards - 1; i >= 0; i--) {
+            String output = runMainCapturingOutput(new String[] { "--jsonFile", capture.getPath(), "--jsonLines", 
+                "-d", "kind", "--shard", i + "/" + shards, "--partialOutput", partialDir.resolve("part-" + i).toString() });
+            assertTrue("Worker should write its partial state", output.contains("Partial state written to"));
+        }
+        String output = runMainCapturingOutput(new String[] { "--mergePartials", partialDir.toString(), 
+            "-d", "kind", "-f", mergedReport.getPath() });
+        
+        // Assert
+        assertTrue("Coordinator should merge every shard", output.contains("Merged 4 partial state(s)"));
+        assertEquals("Merged report should match a single-process run", 
+            readFileContent(singleReport), readFileContent(mergedReport));
+        
+        // Act - top values and quantiles are merged from per-shard summaries
+        for (java.io.File file : partialDir.toFile().listFiles()) {
+            file.delete();
+        }
+        String[] summaries = { "-d", "kind", "--topValues", "10", "--quantiles" };
+        runMainCapturingOutput(concat(new String[] { "--jsonFile", capture.getPath(), "--jsonLines", "-s", "-n", 
+            "-f", singleReport.getPath() }, summaries));
+        for (int i = 0; i < shards; i++) {
+            runMainCapturingOutput(concat(new String[] { "--jsonFile", capture.getPath(), "--jsonLines", 
+                "--shard", i + "/" + shards, "--partialOutput", partialDir.resolve("part-" + i).toString() }, summaries));
+        }
+        output = runMainCapturingOutput(concat(new String[] { "--mergePartials", partialDir.toString(), 
+            "-f", mergedReport.getPath() }, summaries));
+        
+        // Assert - everything else is exact, and the summaries stay within their bounds
+        assertTrue("Coordinator should note that summaries are approximate", output.contains("Note: top values"));
+        com.google.gson.Gson gson = new com.google.gson.Gson();
+        ApiDumper.SchemaReport single = gson.fromJson(readFileContent(singleReport), ApiDumper.SchemaReport.class);
+        ApiDumper.SchemaReport merged = gson.fromJson(readFileContent(mergedReport), ApiDumper.SchemaReport.class);
+        assertEquals("Values of a property with at most K values should be exact", 
+            gson.toJson(findProperty(single, "kind").topValues), gson.toJson(findProperty(merged, "kind").topValues));
+        for (ApiDumper.TopValueInfo top : findProperty(merged, "id").topValues) {
+            long error = top.error == null ? 0 : top.error;
+            assertTrue("Every id occurs once, within the reported error", top.count - error <= 1 && top.count >= 1);
+        }
+        java.util.Map<String, String> quantiles = findProperty(merged, "id").dataTypes.get(0).quantiles.get("number");
+        assertEquals("Median should be within 2% in rank", 250, Double.parseDouble(quantiles.get("p50")), 10);
+        assertEquals("p90 should be within 2% in rank", 450, Double.parseDouble(quantiles.get("p90")), 10);
+        for (ApiDumper.SchemaReport report : new ApiDumper.SchemaReport[] { single, merged }) {
+            for (ApiDumper.SchemaProperty property : report.schemaReport) {
+                property.topValues = null;
+                for (ApiDumper.DataTypeInfo dataType : property.dataTypes) {
+                    dataType.quantiles = null;
+                    dataType.histograms = null;
+                }
+            }
+        }
+        assertEquals("Merged report should otherwise match a single-process run", gson.toJson(single), gson.toJson(merged));
+        
+        for (java.io.File file : partialDir.toFile().listFiles()) {
+            file.delete();
+        }
+        partialDir.toFile().delete();
+    }
+
+    @Test
+    public void testProcessJsonFile_warnsWhenThreadsAreUnused() throws Exception {
+        String[] args = { "--jsonFile", "src/test/resources/test-file.json", "-s", "-n", "--threads", "4" };
+        java.io.ByteArrayOutputStream errors = new java.io.ByteArrayOutputStream();
+        java.io.PrintStream originalErr = System.err;
+        System.setErr(new java.io.PrintStream(errors, true, "UTF-8"));
+        try {
+            runMainCapturingOutput(args);
+            assertFalse("Batched runs should not warn", errors.toString("UTF-8").contains("--threads"));
+            
+            runMainCapturingOutput(concat(args, "--topValues", "3"));
+            assertTrue("Sequential runs should say that --threads is not used", 
+                       errors.toString("UTF-8").contains("Warning: --threads is not used with --topValues"));
+        } finally {
+            System.setErr(originalErr);
+        }
+    }
+
+    @Test
+    public void testProcessJsonFile_streamedReportMatchesGsonLayout() throws Exception {
+        // Arrange - values that need HTML-safe escaping, a null example and every optional report section
+        java.io.File json = java.io.File.createTempFile("streamed-report", ".json");
+        json.deleteOnExit();
+        java.io.File reportFile = java.io.File.createTempFile("streamed-report", ".report.json");
+        reportFile.deleteOnExit();
+        java.nio.file.Files.write(json.toPath(), ("[{\"name\": \"<b>Tom & 'Jerry'</b>\", \"n\": 1.50, \"nul\": null, "
+            + "\"at\": \"2024-01-02T03:04:05Z\", \"tags\": [\"a=b\"]}, {\"name\": \"Ann\", \"n\": -3, \"nul\": \"x\", "
+            + "\"at\": \"2024-02-02T03:04:05+02:00\", \"tags\": []}]").getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        String[] args = { "--jsonFile", json.getAbsolutePath(), "--dumpSchemaReport", "--noDataDump", 
+                          "--dumpDistinctValues", "name,tags", "--topValues", "2", "--quantiles" };
+        
+        // Act
+        runMainCapturingOutput(concat(args, "--reportFile", reportFile.getAbsolutePath()));
+        String console = runMainCapturingOutput(args);
+        
+        // Assert - the same text Gson's pretty printing produces for the report tree, in the file and on the console
+        String written = new String(java.nio.file.Files.readAllBytes(reportFile.toPath()), java.nio.charset.StandardCharsets.UTF_8);
+        String report = written.substring(0, written.length() - System.lineSeparator().length());
+        String reprinted = new com.google.gson.GsonBuilder().setPrettyPrinting().create()
+            .toJson(com.google.gson.JsonParser.parseString(report));
+        assertEquals(reprinted + System.lineSeparator(), written);
+        assertTrue("Names should be HTML-escaped", report.contains("\\u003cb\\u003eTom \\u0026 \\u0027Jerry\\u0027"));
+        assertTrue("Console should show the same report", 
+            console.endsWith("Schema Report:" + System.lineSeparator() + written));
+    }
+
+    @Test
+    public void testCallApiAndOutputResponse_cacheRevalidatesWithEtag() throws Exception {
+        // Arrange - a server that honours If-None-Match for its single ETag
+        final String body = readFileContent(new java.io.File("src/test/resources/test-file.json"));
+        final int[] fullResponses = new int[1];
+        com.sun.net.httpserver.HttpServer server = com.sun.net.httpserver.HttpServer.create(
+            new java.net.InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            fullResponses[0]++;
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (java.io.OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        java.nio.file.Path cacheDir = java.nio.file.Files.createTempDirectory("response-cache");
+        java.io.File firstReport = java.io.File.createTempFile("first-report", ".json");
+        java.io.File secondReport = java.io.File.createTempFile("second-report", ".json");
+        firstReport.deleteOnExit();
+        secondReport.deleteOnExit();
+        String url = "http://localhost:" + server.getAddress().getPort() + "/data";
+        
+        // Act - the first run downloads and caches, the second one revalidates
+        runMainCapturingOutput(new String[] { "--url", url, "-s", "-n", "-d", "users.name", 
+            "--cacheDir", cacheDir.toString(), "-f", firstReport.getPath() });
+        String secondOutput = runMainCapturingOutput(new String[] { "--url", url, "-s", "-d", "users.name", 
+            "--cacheDir", cacheDir.toString(), "-f", secondReport.getPath() });
+        String consoleOutput = runMainCapturingOutput(new String[] { "--url", url, "-s", "-n", "-d", "users.name", 
+            "--cacheDir", cacheDir.toString() });
+        server.stop(0);
+        
+        // Assert
+        assertEquals("Only the first run should download the body", 1, fullResponses[0]);
+        assertTrue("Second run should see a 304", secondOutput.contains("Status Code: 304"));
+        assertTrue("Second run should use the cache", secondOutput.contains("using cached response"));
+        assertTrue("Second run should print the cached body", secondOutput.contains(body));
+        assertEquals("Cached report should match the original report", 
+                     readFileContent(firstReport), readFileContent(secondReport));
+        String reportText = new String(java.nio.file.Files.readAllBytes(firstReport.toPath()), "UTF-8");
+        assertTrue("Cached report should be replayed to the console as written", 
+                   consoleOutput.endsWith("Schema Report:" + System.lineSeparator() + reportText));
+        
+        for (java.io.File file : cacheDir.toFile().listFiles()) {
+            file.delete();
+        }
+        cacheDir.toFile().delete();
+        firstReport.delete();
+        secondReport.delete();
+    }
+
+    @Test
+    public void testInferDataType_matchesRegexClassifier() throws Exception {
+        // Arrange
+        Method method = ApiDumper.class.getDeclaredMethod("inferDataType", String.class);
+        method.setAccessible(true);
+        java.util.List<String> values = new java.util.ArrayList<>(java.util.Arrays.asList(
+            "", "-", ".", "-.", "1.", ".5", "-.5", "1.e5", ".e5", "1.5e", "1.5e+", "1.5E-3", "1e5", "007", "-0", "--1", "1-", 
+            "true", "False", "TRUE ", "fal\u017fe", "\u0661\u0662", 
+            "2024-01-31", "2024-01-31T12:34:56", "2024-01-31 12:34:56.789", "2024-01-31T12:34:56.", "2024-01-31T12:34:56Z", 
+            "2024-01-31T12:34:56z", "2024-01-31T12:34:56+05:30", "2024-01-31T12:34:56-0530", "2024-01-31T12:34", "2024-1-31", 
+            "1/2/2024", "12/31/2024", "123/1/2024", "1/2/24", "1//2024", "12:30", "12:30:45", "1:30", "12:30:4", "12:30:45:00",
+            "550e8400-e29b-41d4-a716-446655440000", "550E8400E29B41D4A716446655440000", "550e8400-e29b-41d4-a716-44665544000g", 
+            "12345678901234567890123456789012", "550e8400e29b-41d4-a716-4466554400000"));
+        values.addAll(InferDataTypeBenchmark.generateValues(2000, new java.util.Random(7)));
+        java.util.Random random = new java.util.Random(11);
+        String alphabet = "0123456789abcdefABCDEF-.:/TZ+eE x";
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            values.add(value.toString());
+        }
+        
+        // Act and Assert
+        for (String value : values) {
+            assertEquals("Classification of '" + value + "'", 
+                         InferDataTypeBenchmark.regexInferDataType(value), method.invoke(null, value));
+        }
+    }
+
+    @Test
+    public void testApproximateDistinct_estimatesHighCardinalityProperties() throws Exception {
+        // Arrange - one unique id per record, a three-valued status and a listed name property
+        java.io.File records = java.io.File.createTempFile("high-cardinality", ".ndjson");
+        java.io.File reportFile = java.io.File.createTempFile("approximate-report", ".json");
+        records.deleteOnExit();
+        reportFile.deleteOnExit();
+        try (java.io.PrintWriter writer = new java.io.PrintWriter(records, "UTF-8")) {
+            for (int i = 0; i < 20000; i++) {
+                writer.println("{\"id\": \"id-" + i + "\", \"status\": " + (i % 3) + ", \"name\": \"name-" + (i % 500) + "\"}");
+            }
+        }
+        
+        // Act
+        runMainCapturingOutput(new String[] { "--jsonFile", records.getPath(), "--jsonLines", "-s", "-n", 
+            "--approximateDistinct", "12", "-d", "name", "-f", reportFile.getPath() });
+        
+        // Assert
+        com.google.gson.Gson gson = new com.google.gson.Gson();
+        ApiDumper.SchemaReport report = gson.fromJson(readFileContent(reportFile), ApiDumper.SchemaReport.class);
+        ApiDumper.SchemaProperty id = findProperty(report, "id");
+        ApiDumper.SchemaProperty status = findProperty(report, "status");
+        ApiDumper.SchemaProperty name = findProperty(report, "name");
+        
+        assertEquals("Unique ids should be estimated", Boolean.TRUE, id.distinctValuesEstimated);
+        assertEquals("Id estimate should be within 5% at precision 12", 20000, id.distinctValues, 1000);
+        assertEquals("Small properties should stay exact", Boolean.FALSE, status.distinctValuesEstimated);
+        assertEquals("Status should have an exact count", 3, status.distinctValues);
+        assertEquals("Listed properties should stay exact", Boolean.FALSE, name.distinctValuesEstimated);
+        assertEquals("Name should have an exact count", 500, name.distinctValues);
+        assertEquals("Listed properties should keep their values", 500, name.distinctValuesArray.size());
+        
+        records.delete();
+        reportFile.delete();
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_fingerprintsMatchSerializedDistinctValues() throws Exception {
+        // Arrange - composite values that differ only by member order, value type or nesting
+        String json = "[{\"a\": {\"x\": 1, \"y\": [1, 2]}}, {\"a\": {\"x\": 1, \"y\": [1, 2]}}, "
+            + "{\"a\": {\"y\": [1, 2], \"x\": 1}}, {\"a\": {\"x\": \"1\", \"y\": [1, 2]}}, "
+            + "{\"a\": {\"x\": 1, \"y\": [2, 1]}}, {\"a\": {\"x\": 1, \"y\": [[1], 2]}}, "
+            + "{\"a\": {\"x\": 1, \"y\": [1, [2]]}}, {\"a\": {\"x\": null, \"y\": []}}, "
+            + "{\"a\": {\"x\": \"null\", \"y\": [{}]}}]";
+        
+        // Act
+        String treeReport = generateTreeSchemaReportJson(json, analysisOptions(null));
+        String streamingReport = generateSchemaReportJson(json, analysisOptions(null));
+        String exactReport = invokeGenerateSchemaReportJson(json, "a,a.y");
+        
+        // Assert - fingerprint counts equal the counts of the serialized values
+        assertEquals("Tree and streaming analysis should agree", treeReport, streamingReport);
+        com.google.gson.Gson gson = new com.google.gson.Gson();
+        ApiDumper.SchemaReport fingerprinted = gson.fromJson(treeReport, ApiDumper.SchemaReport.class);
+        ApiDumper.SchemaReport exact = gson.fromJson(exactReport, ApiDumper.SchemaReport.class);
+        assertEquals("Distinct objects", 8, findProperty(exact, "a").distinctValues);
+        assertEquals("Distinct objects", 8, findProperty(fingerprinted, "a").distinctValues);
+        assertEquals("Distinct arrays", 6, findProperty(exact, "a.y").distinctValues);
+        assertEquals("Distinct arrays", 6, findProperty(fingerprinted, "a.y").distinctValues);
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_parallelArrayAnalysisMatchesSequential() throws Exception {
+        // Arrange - large arrays, both wrapped in an object and at the top level, with properties appearing late
+        java.util.Random random = new java.util.Random(3);
+        StringBuilder items = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0) {
+                items.append(",");
+            }
+            items.append("{\"id\": ").append(i).append(", \"name\": \"item-").append(random.nextInt(700)).append("\"");
+            if (i % 7 == 0) {
+                items.append(", \"tags\": [\"t").append(i % 5).append("\"], \"price\": ").append(random.nextInt(10000) / 100.0);
+            }
+            if (i > 4000) {
+                items.append(", \"late\": {\"since\": \"2024-01-").append(10 + i % 20).append("\"}");
+            }
+            items.append("}");
+        }
+        items.append("]");
+        String wrapped = "{\"meta\": {\"total\": 5000}, \"items\": " + items + ", \"tail\": true}";
+        
+        for (String json : new String[] { wrapped, items.toString() }) {
+            // Act
+            String sequential = generateSchemaReportJson(json, analysisOptions("tags", "threads", 1));
+            String parallel = generateSchemaReportJson(json, analysisOptions("tags", "threads", 4));
+            
+            // Assert
+            assertNotNull("Sequential report should be generated", sequential);
+            assertEquals("Parallel report should match the sequential report exactly", sequential, parallel);
+            
+            // Top values are summarized sequentially whatever the thread count
+            assertEquals("Top values should not depend on the thread count",
+                generateSchemaReportJson(json, analysisOptions(null, "topValues", 5, "threads", 1)),
+                generateSchemaReportJson(json, analysisOptions(null, "topValues", 5, "threads", 4)));
+            assertEquals("Quantiles and histograms should not depend on the thread count",
+                generateSchemaReportJson(json, analysisOptions(null, "quantiles", true, "threads", 1)),
+                generateSchemaReportJson(json, analysisOptions(null, "quantiles", true, "threads", 4)));
+        }
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_typedMinMaxValues() throws Exception {
+        // Arrange - values whose order differs from their text order or is lost in a double
+        String json = "[{\"id\": 12345678901234567891, \"code\": \"98765432109876543210\", "
+            + "\"day\": \"12/31/2023\", \"at\": \"2024-01-01T10:00:00+05:00\", \"ratio\": 1e400}, "
+            + "{\"id\": 12345678901234567890, \"code\": \"98765432109876543211\", "
+            + "\"day\": \"1/2/2024\", \"at\": \"2024-01-01T06:00:00Z\", \"ratio\": 2e400}, "
+            + "{\"id\": 12345678901234567892, \"code\": \"-5\", "
+            + "\"day\": \"25/12/2023\", \"at\": \"2024-01-01 05:30:00.5\", \"ratio\": -0.5}]";
+        
+        // Act
+        String treeReport = generateTreeSchemaReportJson(json, analysisOptions(null));
+        String streamingReport = generateSchemaReportJson(json, analysisOptions(null));
+        
+        // Assert
+        assertEquals("Tree and streaming analysis should agree", treeReport, streamingReport);
+        ApiDumper.SchemaReport report = new com.google.gson.Gson().fromJson(treeReport, ApiDumper.SchemaReport.class);
+        verifyNumericPropertyMinMax(report, "id", "12345678901234567890", "12345678901234567892");
+        verifyStringPropertyMinMax(report, "code", "-5", "98765432109876543211");
+        verifyStringPropertyMinMax(report, "day", "25/12/2023", "1/2/2024");
+        verifyStringPropertyMinMax(report, "at", "2024-01-01T10:00:00+05:00", "2024-01-01T06:00:00Z");
+        verifyNumericPropertyMinMax(report, "ratio", "-0.5", "2e400");
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_sampledCountsAreScaled() throws Exception {
+        // Arrange - 20000 items, about 30% of which have an optional note
+        StringBuilder json = new StringBuilder("{\"meta\": {\"page\": 1}, \"items\": [");
+        java.util.Random random = new java.util.Random(42);
+        int notes = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\": ").append(i);
+            if (random.nextInt(10) < 3) {
+                json.append(", \"note\": \"n").append(i).append('"');
+                notes++;
+            }
+            json.append('}');
+        }
+        json.append("]}");
+        
+        for (String mode : new String[] { "count", "fraction" }) {
+            // Act
+            String reportJson = "count".equals(mode)
+                ? generateSchemaReportJson(json.toString(), analysisOptions(null, "sampleSize", 1000))
+                : generateSchemaReportJson(json.toString(), analysisOptions(null, "sampleFraction", 0.05));
+            ApiDumper.SchemaReport report = new com.google.gson.Gson().fromJson(reportJson, ApiDumper.SchemaReport.class);
+            
+            // Assert
+            ApiDumper.SchemaProperty id = findProperty(report, "items.id");
+            assertEquals(mode + ": every element has an id", 20000, id.count);
+            assertNotNull(mode + ": sampled properties should report the sample size", id.sampleSize);
+            ApiDumper.SchemaProperty note = findProperty(report, "items.note");
+            assertTrue(mode + ": lower bound " + note.countLower + " should not exceed " + notes, note.countLower <= notes);
+            assertTrue(mode + ": upper bound " + note.countUpper + " should not be below " + notes, note.countUpper >= notes);
+            assertTrue(mode + ": estimate should be within the bounds",
+                note.countLower <= note.count && note.count <= note.countUpper);
+            ApiDumper.SchemaProperty page = findProperty(report, "meta.page");
+            assertEquals(mode + ": properties outside the array are not sampled", 1, page.count);
+            assertNull(mode + ": properties outside the array have no sample size", page.sampleSize);
+        }
+        
+        assertEquals("Sampling should be repeatable",
+            generateSchemaReportJson(json.toString(), analysisOptions(null, "sampleSize", 1000)),
+            generateSchemaReportJson(json.toString(), analysisOptions(null, "sampleSize", 1000)));
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_sampledArrayOfArrays() throws Exception {
+        // Arrange - 2000 rows of exactly 5 cells each
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            json.append(i > 0 ? ",[" : "[");
+            for (int j = 0; j < 5; j++) {
+                json.append(j > 0 ? "," : "").append("{\"cell\": ").append(i * 5 + j).append('}');
+            }
+            json.append(']');
+        }
+        json.append("]");
+        
+        for (Object[] sample : new Object[][] { { "sampleSize", 100 }, { "sampleFraction", 0.1 } }) {
+            // Act
+            ApiDumper.SchemaReport report = new com.google.gson.Gson().fromJson(
+                generateSchemaReportJson(json.toString(), analysisOptions(null, sample)), ApiDumper.SchemaReport.class);
+            
+            // Assert - only the rows are sampled; every sampled row contributes all of its cells
+            ApiDumper.SchemaProperty cell = findProperty(report, "cell");
+            assertEquals(sample[0] + ": scaled count should cover every cell", 10000, cell.count);
+            assertEquals(sample[0] + ": rows occur equally often, so the bounds are exact", 10000, (long) cell.countLower);
+            assertEquals(sample[0] + ": rows occur equally often, so the bounds are exact", 10000, (long) cell.countUpper);
+            if ("sampleSize".equals(sample[0])) {
+                assertEquals("The sample size should count rows", 100, (long) cell.sampleSize);
+            }
+        }
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_topValues() throws Exception {
+        // Arrange - a few frequent statuses among thousands of unique ones; with K = 10 every
+        // value occurring more than 10000 / 10 times is guaranteed to be tracked
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 10000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String status = i % 4 == 0 ? "active" : i % 4 == 1 ? "closed" : i % 8 == 2 ? "pending" : "s" + i;
+            json.append("{\"status\": \"").append(status).append("\", \"nested\": {\"flag\": ")
+                .append(i % 10 == 0).append("}}");
+        }
+        json.append("]");
+        
+        // Act
+        String reportJson = generateSchemaReportJson(json.toString(), analysisOptions(null, "topValues", 10));
+        ApiDumper.SchemaReport report = new com.google.gson.Gson().fromJson(reportJson, ApiDumper.SchemaReport.class);
+        
+        // Assert
+        java.util.List<ApiDumper.TopValueInfo> statuses = findProperty(report, "status").topValues;
+        assertNotNull("status should have top values", statuses);
+        assertEquals("At most K values should be reported", 10, statuses.size());
+        String[] expected = { "active", "closed", "pending" };
+        long[] trueCounts = { 2500, 2500, 1250 };
+        for (int i = 0; i < expected.length; i++) {
+            ApiDumper.TopValueInfo top = statuses.get(i);
+            assertEquals("Heavy hitters should come first in frequency order", expected[i], top.value);
+            long error = top.error != null ? top.error : 0;
+            assertTrue(top.value + " count should not underestimate", top.count >= trueCounts[i]);
+            assertTrue(top.value + " count should be within its error", top.count - error <= trueCounts[i]);
+        }
+        
+        java.util.List<ApiDumper.TopValueInfo> flags = findProperty(report, "nested.flag").topValues;
+        assertEquals("Low-cardinality values should be exact", 2, flags.size());
+        assertEquals("false", flags.get(0).value);
+        assertEquals(9000, flags.get(0).count);
+        assertNull("Exact counts should carry no error", flags.get(0).error);
+        assertEquals("true", flags.get(1).value);
+        assertEquals(1000, flags.get(1).count);
+        
+        assertNull("Objects should have no top values", findProperty(report, "nested").topValues);
+        assertNull("Top values should be omitted without --topValues", 
+            new com.google.gson.Gson().fromJson(invokeGenerateSchemaReportJson(json.toString(), null), 
+                ApiDumper.SchemaReport.class).schemaReport.get(0).topValues);
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_quantilesAndHistograms() throws Exception {
+        // Arrange - a small exact stream and a large shuffled one that needs compaction
+        StringBuilder json = new StringBuilder("[");
+        java.util.List<Integer> latencies = new java.util.ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            latencies.add(i);
+        }
+        java.util.Collections.shuffle(latencies, new java.util.Random(7));
+        for (int i = 0; i < 100000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"latency\": ").append(latencies.get(i));
+            if (i < 100) {
+                json.append(", \"size\": \"").append(i + 1).append("\", \"at\": \"2024-01-01T00:")
+                    .append(String.format("%02d:%02d", i / 60, i % 60)).append("Z\"");
+            }
+            json.append('}');
+        }
+        json.append("]");
+        
+        // Act
+        String reportJson = generateSchemaReportJson(json.toString(), analysisOptions(null, "quantiles", true));
+        ApiDumper.SchemaReport report = new com.google.gson.Gson().fromJson(reportJson, ApiDumper.SchemaReport.class);
+        
+        // Assert - small streams are exact
+        ApiDumper.DataTypeInfo size = findProperty(report, "size").dataTypes.get(0);
+        assertEquals("50", size.quantiles.get("integer").get("p50"));
+        assertEquals("90", size.quantiles.get("integer").get("p90"));
+        assertEquals("99", size.quantiles.get("integer").get("p99"));
+        long total = 0;
+        for (ApiDumper.HistogramBucket bucket : size.histograms.get("integer")) {
+            assertEquals("Values 1..100 should fill the buckets evenly", 10, bucket.count);
+            total += bucket.count;
+        }
+        assertEquals(100, total);
+        ApiDumper.DataTypeInfo at = findProperty(report, "at").dataTypes.get(0);
+        assertEquals("Datetime quantiles should be UTC instants", "2024-01-01T00:00:49Z", at.quantiles.get("datetime").get("p50"));
+        
+        // Large streams are within the sketch's rank error
+        ApiDumper.DataTypeInfo latency = findProperty(report, "latency").dataTypes.get(0);
+        assertEquals("number", latency.type);
+        int[] percentiles = { 50, 90, 99 };
+        for (int percentile : percentiles) {
+            long estimate = Long.parseLong(latency.quantiles.get("number").get("p" + percentile));
+            assertTrue("p" + percentile + " estimate " + estimate + " should be within 3% rank", 
+                Math.abs(estimate - percentile * 1000L) <= 3000);
+        }
+        java.util.List<ApiDumper.HistogramBucket> buckets = latency.histograms.get("number");
+        assertEquals(10, buckets.size());
+        assertEquals("0", buckets.get(0).lower);
+        assertEquals("99999", buckets.get(9).upper);
+        total = 0;
+        for (ApiDumper.HistogramBucket bucket : buckets) {
+            assertTrue("Bucket count " + bucket.count + " should be near 10000", Math.abs(bucket.count - 10000) <= 3000);
+            total += bucket.count;
+        }
+        assertEquals("Histogram should cover every value", 100000, total);
+        assertNull("Quantiles should be omitted without --quantiles", new com.google.gson.Gson().fromJson(
+            invokeGenerateSchemaReportJson("[{\"latency\": 1}]", null), ApiDumper.SchemaReport.class)
+            .schemaReport.get(0).dataTypes.get(0).quantiles);
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_includeAndExcludePaths() throws Exception {
+        // Arrange - records with a large embedded blob next to the fields of interest
+        String json = "{\"meta\": {\"createdAt\": \"2024-01-01\", \"page\": 1}, \"users\": ["
+            + "{\"id\": 1, \"name\": \"a\", \"createdAt\": \"2024-01-02\", \"blob\": {\"data\": [1, 2, {\"deep\": true}]}},"
+            + "{\"id\": 2, \"name\": \"b\", \"profile\": {\"createdAt\": \"2024-01-03\"}, \"blob\": \"raw\"}]}";
+        
+        for (boolean streaming : new boolean[] { true, false }) {
+            String mode = streaming ? "streaming: " : "tree: ";
+            
+            // Act
+            Object excludeOptions = analysisOptions(null, "pathFilter", pathFilter(null, "users.blob,meta.page"));
+            Object includeOptions = analysisOptions(null, "pathFilter", pathFilter("users.id,**.createdAt", "meta.**"));
+            String excluded = streaming ? generateSchemaReportJson(json, excludeOptions) 
+                                        : generateTreeSchemaReportJson(json, excludeOptions);
+            String included = streaming ? generateSchemaReportJson(json, includeOptions) 
+                                        : generateTreeSchemaReportJson(json, includeOptions);
+            
+            // Assert - excluded subtrees are gone and everything else is unchanged
+            ApiDumper.SchemaReport excludedReport = new com.google.gson.Gson().fromJson(excluded, ApiDumper.SchemaReport.class);
+            ApiDumper.SchemaReport fullReport = new com.google.gson.Gson().fromJson(
+                generateSchemaReportJson(json, analysisOptions(null)), ApiDumper.SchemaReport.class);
+            java.util.List<String> expectedPaths = new java.util.ArrayList<>();
+            for (ApiDumper.SchemaProperty property : fullReport.schemaReport) {
+                if (!property.property.startsWith("users.blob") && !property.property.equals("meta.page")) {
+                    expectedPaths.add(property.property);
+                }
+            }
+            java.util.List<String> excludedPaths = new java.util.ArrayList<>();
+            for (ApiDumper.SchemaProperty property : excludedReport.schemaReport) {
+                excludedPaths.add(property.property);
+            }
+            assertEquals(mode + "excluded paths should be skipped", expectedPaths, excludedPaths);
+            assertEquals(mode + "other counts should be unchanged", 2, findProperty(excludedReport, "users.name").count);
+            
+            // Only included paths are recorded; their ancestors are walked but not reported
+            ApiDumper.SchemaReport includedReport = new com.google.gson.Gson().fromJson(included, ApiDumper.SchemaReport.class);
+            java.util.List<String> includedPaths = new java.util.ArrayList<>();
+            for (ApiDumper.SchemaProperty property : includedReport.schemaReport) {
+                includedPaths.add(property.property);
+            }
+            assertEquals(mode + "only included paths should be reported", 
+                java.util.Arrays.asList("users.id", "users.createdAt", "users.profile.createdAt"), includedPaths);
+            assertEquals(2, findProperty(includedReport, "users.id").count);
+        }
+        
+        assertEquals("Streaming and tree analysis should agree",
+            generateTreeSchemaReportJson(json, analysisOptions(null, "pathFilter", pathFilter("users", "users.blob.data"))),
+            generateSchemaReportJson(json, analysisOptions(null, "pathFilter", pathFilter("users", "users.blob.data"))));
+    }
+
+    @Test
+    public void testGenerateSchemaReportJson_offHeapDistinctMatchesHeap() throws Exception {
+        // Arrange - enough distinct values (some multi-byte) to fill a small budget and spill to disk
+        StringBuilder json = new StringBuilder("{\"items\": [");
+        for (int i = 0; i < 60000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"code\": \"c\u00e9-").append(i % 50000).append("\", \"kind\": \"k").append(i % 3).append("\"}");
+        }
+        json.append("]}");
+        Class<?> memoryClass = Class.forName("com.example.apidumper.ApiDumper$OffHeapMemory");
+        java.lang.reflect.Constructor<?> memoryConstructor = memoryClass.getDeclaredConstructor(long.class);
+        memoryConstructor.setAccessible(true);
+        Object memory = memoryConstructor.newInstance(256L * 1024);
+        
+        // Act
+        String offHeap = generateSchemaReportJson(json.toString(), analysisOptions("items.code,items.kind", "offHeap", memory));
+        String onHeap = generateSchemaReportJson(json.toString(), analysisOptions("items.code,items.kind"));
+        
+        // Assert - identical report, with the large set spilled past the direct memory budget
+        assertEquals("Off-heap distinct sets should not change the report", onHeap, offHeap);
+        ApiDumper.SchemaReport report = new com.google.gson.Gson().fromJson(offHeap, ApiDumper.SchemaReport.class);
+        assertEquals(50000, findProperty(report, "items.code").distinctValuesArray.size());
+        assertEquals(3, findProperty(report, "items.kind").distinctValuesArray.size());
+        java.lang.reflect.Field spillFileField = memoryClass.getDeclaredField("spillFile");
+        spillFileField.setAccessible(true);
+        java.io.File spillFile = (java.io.File) spillFileField.get(memory);
+        assertNotNull("A 256 KB budget should spill to the mapped file", spillFile);
+        ((java.io.Closeable) memory).close();
+        assertFalse("Closing the memory should delete the spill file", spillFile.exists());
+    }
+
+    @Test
+    public void testOffHeapStringSet_releasedSpillRegionsAreReused() throws Exception {
+        // Arrange - no direct memory, so every buffer is a spill file region
+        Class<?> memoryClass = Class.forName("com.example.apidumper.ApiDumper$OffHeapMemory");
+        java.lang.reflect.Constructor<?> memoryConstructor = memoryClass.getDeclaredConstructor(long.class);
+        memoryConstructor.setAccessible(true);
+        Object memory = memoryConstructor.newInstance(0L);
+        Class<?> setClass = Class.forName("com.example.apidumper.ApiDumper$OffHeapStringSet");
+        java.lang.reflect.Constructor<?> setConstructor = setClass.getDeclaredConstructor(memoryClass, int.class);
+        setConstructor.setAccessible(true);
+        Method release = setClass.getDeclaredMethod("release");
+        release.setAccessible(true);
+        java.lang.reflect.Field spillLengthField = memoryClass.getDeclaredField("spillLength");
+        spillLengthField.setAccessible(true);
+        
+        try {
+            // Act - fill a set past several table resizes, release it and fill another one
+            long[] spillLengths = new long[2];
+            for (int round = 0; round < 2; round++) {
+                @SuppressWarnings("unchecked")
+                java.util.Set<String> set = (java.util.Set<String>) setConstructor.newInstance(memory, 16);
+                for (int i = 0; i < 100000; i++) {
+                    set.add("value-" + i);
+                }
+                
+                // Assert - values are kept exactly
+                assertEquals(100000, set.size());
+                assertTrue(set.contains("value-99999"));
+                assertFalse(set.contains("value-100000"));
+                assertTrue(set.add("extra"));
+                assertFalse(set.add("extra"));
+                release.invoke(set);
+                spillLengths[round] = spillLengthField.getLong(memory);
+            }
+            
+            // Tables and arenas of the second set fit in the regions the first one released
+            assertEquals("The spill file should not grow for the second set", spillLengths[0], spillLengths[1]);
+        } finally {
+            ((java.io.Closeable) memory).close();
+        }
+    }
+
+    @Test
+    public void testSortedDistinctValues_externalMergeMatchesInMemorySort() throws Exception {
+        // Arrange - more values than fit in one run, including surrogate pairs that sort by UTF-16 code unit
+        java.util.Set<String> values = new java.util.HashSet<>();
+        java.util.Random random = new java.util.Random(7);
+        while (values.size() < 1050) {
+            values.add(Integer.toString(random.nextInt(100000), 36) + (random.nextInt(10) == 0 ? "\ud83d\ude00" : "\uff41"));
+        }
+        java.util.List<String> expected = new java.util.ArrayList<>(values);
+        java.util.Collections.sort(expected);
+        Class<?> sortedClass = Class.forName("com.example.apidumper.ApiDumper$SortedDistinctValues");
+        java.lang.reflect.Constructor<?> constructor = sortedClass.getDeclaredConstructor(java.util.Set.class, int.class);
+        constructor.setAccessible(true);
+        Method writeTo = sortedClass.getDeclaredMethod("writeTo", com.google.gson.stream.JsonWriter.class);
+        writeTo.setAccessible(true);
+        
+        for (int runSize : new int[] { 100, 1050 }) {
+            // Act
+            java.io.StringWriter json = new java.io.StringWriter();
+            writeTo.invoke(constructor.newInstance(values, runSize), new com.google.gson.stream.JsonWriter(json));
+            
+            // Assert
+            assertEquals("Run size " + runSize + " should write the sorted values", 
+                new com.google.gson.Gson().toJson(expected), json.toString());
+        }
+    }
+
+    @Test
+    public void testAnalyzeJsonStream_inferenceCacheServesRepeatedValues() throws Exception {
+        // Arrange - an enum-like property next to a property whose values never repeat
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"series\": \"").append(i % 10 == 0 ? "2024-01-0" + (i % 7 + 1) : "Series " + (i % 29))
+                .append("\", \"id\": \"").append(i).append("\"}");
+        }
+        json.append("]");
+        Class<?> optionsClass = Class.forName("com.example.apidumper.ApiDumper$AnalysisOptions");
+        Method analyze = ApiDumper.class.getDeclaredMethod("analyzeJsonStream", java.io.Reader.class, optionsClass);
+        analyze.setAccessible(true);
+        
+        // Act
+        java.util.Map<?, ?> propertyMap = (java.util.Map<?, ?>) analyze.invoke(null, 
+            new java.io.StringReader(json.toString()), analysisOptions(null));
+        
+        // Assert - cached types are the same as classifying every value
+        ApiDumper.SchemaReport report = new com.google.gson.Gson().fromJson(
+            generateSchemaReportJson(json.toString(), analysisOptions(null)), ApiDumper.SchemaReport.class);
+        ApiDumper.DataTypeInfo series = findProperty(report, "series").dataTypes.get(0);
+        assertEquals(2, series.inferredTypes.size());
+        assertEquals("date", series.inferredTypes.get(0).type);
+        assertEquals(200, series.inferredTypes.get(0).count);
+        assertEquals("string", series.inferredTypes.get(1).type);
+        assertEquals(1800, series.inferredTypes.get(1).count);
+        assertEquals(2000, findProperty(report, "id").dataTypes.get(0).inferredTypes.get(0).count);
+        
+        long[] seriesCache = getInferenceCacheCounters(propertyMap.get("series"));
+        assertEquals(2000, seriesCache[0]);
+        assertTrue("Enum-like values should mostly hit the cache: " + seriesCache[1], seriesCache[1] > 1900);
+        long[] idCache = getInferenceCacheCounters(propertyMap.get("id"));
+        assertEquals(2000, idCache[0]);
+        assertEquals("Unique values never hit the cache", 0, idCache[1]);
+    }
+
     /**
      * Helper method to read file content as string.
      */